@@ -0,0 +1,82 @@
+package movies;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.management.ObjectName;
+
+import movies.Server.Credit;
+
+/**
+ * Heap retained by the credits in the old List&lt;String&gt; layout versus the dictionary-encoded one, on the heap and
+ * off it, measured with the same class histogram as {@code jcmd <pid> GC.class_histogram}. Run with {@code ./gradlew creditFootprint}.
+ * Against a live server, compare the histograms of a build before and after the change instead.
+ */
+public class CreditFootprint {
+	private static final Pattern ROLE = Pattern.compile("\\((.*)\\)");
+	private static final Pattern TOTAL = Pattern.compile("Total\\s+(\\d+)\\s+(\\d+)");
+
+	// What Server.Credit looked like before: every name and role a separate String, roles derived into a second list
+	static class LegacyCredit {
+		String id;
+		List<String> crew;
+		List<String> cast;
+		transient List<String> crewRole;
+
+		LegacyCredit(org.bson.Document data) {
+			this.id = data.getString("id");
+			this.crew = data.getList("crew", String.class);
+			this.cast = data.getList("cast", String.class);
+			this.crewRole = crew.stream().map(nameAndRole -> {
+				var matcher = ROLE.matcher(nameAndRole);
+				matcher.find();
+				return matcher.group(1);
+			}).toList();
+		}
+	}
+
+	private static Object retained;
+
+	public static void main(String[] args) throws Exception {
+		var movies = Fixtures.movies();
+
+		var before = histogramTotal();
+		retained = Fixtures.creditDocuments(movies).map(LegacyCredit::new).toList();
+		var legacy = histogramTotal() - before;
+		retained = null;
+
+		before = histogramTotal();
+		retained = Fixtures.credits(movies, CreditDictionary.Storage.HEAP);
+		var encoded = histogramTotal() - before;
+		retained = null;
+
+		before = histogramTotal();
+		List<Credit> offHeap = Fixtures.credits(movies, CreditDictionary.Storage.OFF_HEAP);
+		retained = offHeap;
+		var offHeapHeap = histogramTotal() - before;
+		var offHeapDirect = offHeap.get(0).dictionary().offHeapBytes();
+
+		System.out.printf("%d credits%n", offHeap.size());
+		System.out.printf("List<String> layout:       %,12d bytes%n", legacy);
+		System.out.printf("dictionary-encoded layout: %,12d bytes (%.0f%% less)%n", encoded, 100.0 * (legacy - encoded) / legacy);
+		System.out.printf("off-heap dictionary:       %,12d bytes (%.0f%% less) + %,d bytes off-heap%n",
+			offHeapHeap, 100.0 * (legacy - offHeapHeap) / legacy, offHeapDirect);
+		System.out.println(histogram().lines().limit(12).reduce((a, b) -> a + "\n" + b).orElse(""));
+	}
+
+	/** Bytes in live objects; the histogram forces a full GC first. */
+	private static long histogramTotal() throws Exception {
+		var matcher = TOTAL.matcher(histogram());
+		if (!matcher.find()) {
+			throw new IllegalStateException("No total in class histogram");
+		}
+		return Long.parseLong(matcher.group(2));
+	}
+
+	private static String histogram() throws Exception {
+		return (String) ManagementFactory.getPlatformMBeanServer().invoke(
+			new ObjectName("com.sun.management:type=DiagnosticCommand"),
+			"gcClassHistogram", new Object[] { new String[0] }, new String[] { String[].class.getName() });
+	}
+}
@@ -0,0 +1,65 @@
+package movies;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import movies.Server.Credit;
+import movies.Server.Movie;
+
+/**
+ * Finding the credits of the movies matching "jurassic": the ordinal join index, the grouped-by-id map it replaced
+ * and LeakyServer's scan of every credit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CreditLookupBenchmark {
+	private List<Movie> selected;
+	private List<Credit> credits;
+	private Map<String, List<Credit>> creditsById;
+	private int[] selectedOrdinals;
+	private CreditJoin join;
+
+	@Setup
+	public void setup() {
+		var movies = Fixtures.movies();
+		credits = Fixtures.credits(movies);
+		creditsById = credits.stream().collect(Collectors.groupingBy(c -> c.id));
+		join = CreditJoin.build(movies, Movie::id, credits);
+		selectedOrdinals = TitleIndex.build(movies, Movie::title).search("jurassic");
+		selected = TitleIndex.select(selectedOrdinals, movies);
+	}
+
+	@Benchmark
+	public void creditJoin(Blackhole blackhole) {
+		for (var ordinal : selectedOrdinals) {
+			blackhole.consume(join.first(ordinal));
+		}
+	}
+
+	@Benchmark
+	public void creditsByMovieId(Blackhole blackhole) {
+		for (var movie : selected) {
+			blackhole.consume(creditsById.get(movie.id()));
+		}
+	}
+
+	// LeakyServer.creditsForMovie
+	@Benchmark
+	public void linearScan(Blackhole blackhole) {
+		for (var movie : selected) {
+			blackhole.consume(credits.stream().filter(c -> c.id.equals(movie.id())).toList());
+		}
+	}
+}
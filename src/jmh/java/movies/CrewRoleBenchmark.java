@@ -0,0 +1,40 @@
+package movies;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import movies.Server.CrewRole;
+
+/**
+ * Role parsing as Server does it (ROLES_MAP lookup) against IntroServer/LeakyServer (valueOf, catching the exception
+ * for roles that are not in the enum). Unknown roles such as "Producer" are common in the real credits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CrewRoleBenchmark {
+	@Param({ "Director", "Producer" })
+	public String role;
+
+	@Benchmark
+	public CrewRole rolesMapLookup() {
+		return CrewRole.parseRole(role);
+	}
+
+	// IntroServer.CrewRole.parseRole, minus the trace logging which would need IntroServer's static initializer
+	@Benchmark
+	public CrewRole valueOfWithException() {
+		try {
+			return CrewRole.valueOf(role);
+		} catch (IllegalArgumentException e) {
+			return CrewRole.Other;
+		}
+	}
+}
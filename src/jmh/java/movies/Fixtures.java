@@ -0,0 +1,81 @@
+package movies;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+
+import movies.Server.Credit;
+import movies.Server.Movie;
+
+/** Synthetic, deterministic stand-in for movies-v2.json.gz so benchmarks run without Mongo or the data file. */
+final class Fixtures {
+	static final int MOVIE_COUNT = 45_000;
+
+	private static final String[] WORDS = {
+		"the", "a", "of", "and", "love", "night", "man", "day", "dark", "last", "story", "world", "life", "house",
+		"girl", "dead", "war", "time", "city", "blood", "return", "king", "lost", "black", "secret", "american",
+		"christmas", "island", "game", "dream", "shadow", "river", "summer", "ghost", "murder", "heart", "road",
+	};
+
+	private static final String[] ROLES = { "Director", "Writer", "Screenplay", "Editor", "Animation", "Producer", "Composer" };
+
+	private Fixtures() { }
+
+	static List<Movie> movies() {
+		var random = new Random(42);
+		var movies = new ArrayList<Movie>(MOVIE_COUNT);
+		for (int i = 0; i < MOVIE_COUNT; i++) {
+			var title = new StringBuilder();
+			for (int w = 1 + random.nextInt(4); w > 0; w--) {
+				var word = WORDS[random.nextInt(WORDS.length)];
+				title.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length()).append(' ');
+			}
+			if (i % 5_000 == 0) {
+				title.append("Jurassic Park ");
+			}
+			var released = LocalDate.ofEpochDay(-10_000 + random.nextInt(30_000));
+			movies.add(new Movie(
+				Integer.toString(i),
+				title.toString().trim(),
+				"Overview of movie " + i,
+				i % 997 == 0 ? "" : released.toString(),
+				"Tagline " + i,
+				title.toString().trim(),
+				Integer.toString(random.nextInt(10))
+			));
+		}
+		return movies;
+	}
+
+	/** One credit per movie, drawing crew and cast from a shared pool of names the way real credits repeat people. */
+	static List<Credit> credits(List<Movie> movies) {
+		return credits(movies, CreditDictionary.Storage.HEAP);
+	}
+
+	static List<Credit> credits(List<Movie> movies, CreditDictionary.Storage storage) {
+		var dictionary = new CreditDictionary();
+		var credits = creditDocuments(movies).map(data -> new Credit(data, dictionary)).toList();
+		dictionary.seal(storage);
+		return credits;
+	}
+
+	/** The mongo documents behind {@link #credits(List)}, generated lazily with fresh strings just like the driver decodes them. */
+	static Stream<Document> creditDocuments(List<Movie> movies) {
+		var random = new Random(7);
+		return movies.stream().map(movie -> {
+			var crew = new ArrayList<String>();
+			for (int i = 3 + random.nextInt(20); i > 0; i--) {
+				crew.add("Person " + random.nextInt(20_000) + " (" + ROLES[random.nextInt(ROLES.length)] + ")");
+			}
+			var cast = new ArrayList<String>();
+			for (int i = 2 + random.nextInt(15); i > 0; i--) {
+				cast.add("Person " + random.nextInt(20_000));
+			}
+			return new Document("id", movie.id()).append("crew", crew).append("cast", cast);
+		});
+	}
+}
@@ -0,0 +1,66 @@
+package movies;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import movies.Server.Movie;
+
+/**
+ * Latency of a regex title scan with and without the time budget, for an ordinary pattern (the guard's overhead)
+ * and for backtracking-heavy ones (what the guard protects). Sampled, so the JSON results include the tail percentiles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RegexBudgetBenchmark {
+	private static final int BUDGET_MILLIS = 50;
+
+	@Param({ "n.ght", "(.*a){6}x", "^(\\w+\\s?)*$x" })
+	public String query;
+
+	private List<Movie> movies;
+	private Pattern pattern;
+	private TitleIndex index;
+	private QueryPlanner planner;
+
+	@Setup
+	public void setup() {
+		movies = Fixtures.movies();
+		pattern = Pattern.compile(query, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+		index = TitleIndex.build(movies, Movie::title);
+		planner = new QueryPlanner(16, ScanEngine.SEQUENTIAL, Duration.ofMillis(BUDGET_MILLIS));
+	}
+
+	@Benchmark
+	public int unguarded() {
+		var matches = 0;
+		var matcher = pattern.matcher("");
+		for (var movie : movies) {
+			if (movie.title() != null && matcher.reset(movie.title()).find()) {
+				matches++;
+			}
+		}
+		return matches;
+	}
+
+	// -1 is the 422 the server would reply with
+	@Benchmark
+	public int guarded() {
+		try {
+			return planner.select(index, query).length;
+		} catch (BudgetedCharSequence.BudgetExceededException e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package movies;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import movies.Server.Movie;
+
+/**
+ * Newest-first ordering for /movies: the old per-request sorts with a String comparator (Server) and a
+ * LocalDate-parsing comparator (Timeline/Intro/Leaky) against building ReleaseDateIndex once and paging through its ranking.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReleaseDateSortBenchmark {
+	private List<Movie> movies;
+	private ReleaseDateIndex<Movie> index;
+
+	@Setup
+	public void setup() {
+		movies = Fixtures.movies();
+		index = ReleaseDateIndex.build(movies, Movie::releaseDate);
+	}
+
+	@Benchmark
+	public List<Movie> stringComparatorSort() {
+		var sorted = new ArrayList<Movie>(movies);
+		sorted.sort(Comparator.comparing((Movie m) -> m.releaseDate()).reversed());
+		return sorted;
+	}
+
+	@Benchmark
+	public List<Movie> localDateComparatorSort() {
+		var sorted = new ArrayList<Movie>(movies);
+		sorted.sort(Comparator.comparing((Movie m) -> {
+			try {
+				return LocalDate.parse(m.releaseDate());
+			} catch (Exception e) {
+				return LocalDate.MIN;
+			}
+		}).reversed());
+		return sorted;
+	}
+
+	@Benchmark
+	public ReleaseDateIndex<Movie> releaseDateIndexBuild() {
+		return ReleaseDateIndex.build(movies, Movie::releaseDate);
+	}
+
+	// What /movies without a query does per request now: cut the first page out of the permanent ordering
+	@Benchmark
+	public List<Movie> releaseDateIndexPage() {
+		return TitleIndex.select(index.ranking().page(-1, 100), movies);
+	}
+
+	@Benchmark
+	public List<Movie> oldMoviesBinarySearch() {
+		return index.releasedBefore(ReleaseDateIndex.cutoff("2010"), 10);
+	}
+}
@@ -0,0 +1,102 @@
+package movies;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+
+import movies.Server.Credit;
+import movies.Server.Movie;
+import movies.Server.MovieWithCredits;
+
+/**
+ * replyJSON for a /credits?q= result: a pretty-printed String (the original), compact streaming through Gson,
+ * streaming from pre-serialized MovieWithCredits fragments, and the join view that streams movie and credit fragments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+	@Param({ "jurassic", "the" })
+	public String query;
+
+	private Gson prettyGson;
+	private Gson gson;
+	private FragmentCache fragments;
+	private List<MovieWithCredits> result;
+	private FragmentCache joinFragments;
+	private MovieCreditsView view;
+
+	@Setup
+	public void setup() {
+		var movies = Fixtures.movies();
+		var credits = Fixtures.credits(movies);
+		// Fixtures generates exactly one credit per movie, in movie order
+		var moviesWithCredits = IntStream.range(0, movies.size()).mapToObj(i -> new MovieWithCredits(movies.get(i), List.of(credits.get(i)))).toList();
+		var index = TitleIndex.build(movies, Movie::title);
+		result = index.select(query, moviesWithCredits);
+		prettyGson = new GsonBuilder().setLenient().setPrettyPrinting().registerTypeAdapter(Credit.class, new Credit.JsonAdapter()).create();
+		gson = new GsonBuilder().setLenient().registerTypeAdapter(Credit.class, new Credit.JsonAdapter()).create();
+		fragments = new FragmentCache(gson, 256L << 20, Set.of(Movie.class, MovieWithCredits.class));
+		joinFragments = new FragmentCache(gson, 256L << 20, Set.of(Movie.class, Credit.class));
+		view = new MovieCreditsView(movies, CreditJoin.build(movies, Movie::id, credits), index.search(query));
+	}
+
+	@Benchmark
+	public String prettyString() {
+		return prettyGson.toJson(result);
+	}
+
+	@Benchmark
+	public void compactStreaming(Blackhole blackhole) throws IOException {
+		try (var out = new ResponseWriter(sink(blackhole))) {
+			var json = new JsonWriter(out);
+			gson.toJson(result, result.getClass(), json);
+			json.flush();
+		}
+	}
+
+	@Benchmark
+	public void cachedFragments(Blackhole blackhole) throws IOException {
+		try (var out = new ResponseWriter(sink(blackhole))) {
+			fragments.write(out, result);
+		}
+	}
+
+	@Benchmark
+	public void joinView(Blackhole blackhole) throws IOException {
+		try (var out = new ResponseWriter(sink(blackhole))) {
+			joinFragments.write(out, view);
+		}
+	}
+
+	private static OutputStream sink(Blackhole blackhole) {
+		return new OutputStream() {
+			@Override
+			public void write(int b) {
+				blackhole.consume(b);
+			}
+
+			@Override
+			public void write(byte[] bytes, int offset, int length) {
+				blackhole.consume(bytes);
+			}
+		};
+	}
+}
@@ -0,0 +1,85 @@
+package movies;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import movies.Server.Credit;
+import movies.Server.CrewRole;
+import movies.Server.Movie;
+import movies.Server.StatsResult;
+
+/**
+ * /stats?q=the aggregation with as many threads as the timeline load generator has workers:
+ * the old synchronized groupingBy over role strings against the lock-free sum of precomputed role counts.
+ * Run with -PjmhThreads=1 as well to see how each one scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class StatsBenchmark {
+	private static final Pattern ROLE = Pattern.compile("\\((.*)\\)");
+
+	@Param({ "the" })
+	public String query;
+
+	private List<Movie> selected;
+	private Map<String, List<Credit>> creditsById;
+	private Map<String, List<String>> crewRolesById;
+
+	@Setup
+	public void setup() {
+		var movies = Fixtures.movies();
+		var credits = Fixtures.credits(movies);
+		selected = TitleIndex.build(movies, Movie::title).select(query, movies);
+		creditsById = credits.stream().collect(Collectors.groupingBy(c -> c.id));
+		crewRolesById = credits.stream().collect(Collectors.toMap(c -> c.id, c -> IntStream.range(0, c.crewSize()).mapToObj(c::crewMember).map(StatsBenchmark::role).toList()));
+	}
+
+	@Benchmark
+	public StatsResult synchronizedGroupingBy() {
+		return synchronizedStats(selected, crewRolesById);
+	}
+
+	@Benchmark
+	public StatsResult lockFreeRoleCounts() {
+		var crewCount = new long[CrewRole.VALUES.length];
+		for (var movie : selected) {
+			var credits = creditsById.get(movie.id());
+			if (credits != null) {
+				credits.get(0).addRoleCounts(crewCount);
+			}
+		}
+		return StatsResult.of(selected.size(), crewCount);
+	}
+
+	// What statsEndpoint did before: a global monitor and a Map<CrewRole, Long> per movie
+	private static synchronized StatsResult synchronizedStats(List<Movie> movies, Map<String, List<String>> crewRolesById) {
+		var aggregated = movies.stream()
+			.map(movie -> crewRolesById.getOrDefault(movie.id(), List.of()).stream()
+				.collect(Collectors.groupingBy(CrewRole::parseRole, Collectors.counting())))
+			.flatMap(countMap -> countMap.entrySet().stream())
+			.collect(Collectors.groupingBy(Map.Entry::getKey, Collectors.summingLong(Map.Entry::getValue)));
+		return new StatsResult(movies.size(), aggregated);
+	}
+
+	private static String role(String nameAndRole) {
+		var matcher = ROLE.matcher(nameAndRole);
+		matcher.find();
+		return matcher.group(1);
+	}
+}
@@ -0,0 +1,61 @@
+package movies;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import movies.Server.Movie;
+
+/**
+ * Title lookup latency per query selectivity: "jurassic" hits a handful of titles,
+ * "the" a large share of them, "zzqx" none, and "a" is too short for trigrams.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TitleIndexBenchmark {
+	@Param({ "jurassic", "the", "zzqx", "a" })
+	public String query;
+
+	private List<Movie> movies;
+	private TitleIndex index;
+	private Pattern precompiled;
+
+	@Setup
+	public void setup() {
+		movies = Fixtures.movies();
+		index = TitleIndex.build(movies, Movie::title);
+		precompiled = Pattern.compile(query, Pattern.CASE_INSENSITIVE);
+	}
+
+	@Benchmark
+	public List<Movie> upperCaseMatchesScan() {
+		return movies.stream().filter(m -> m.title().toUpperCase().matches(".*" + query.toUpperCase() + ".*")).toList();
+	}
+
+	@Benchmark
+	public List<Movie> patternFindScan() {
+		var p = Pattern.compile(query, Pattern.CASE_INSENSITIVE);
+		return movies.stream().filter(m -> m.title() != null && p.matcher(m.title()).find()).toList();
+	}
+
+	// What String.matches costs on top of the scan: the same filter with the pattern compiled once, outside the request
+	@Benchmark
+	public List<Movie> precompiledPatternScan() {
+		return movies.stream().filter(m -> m.title() != null && precompiled.matcher(m.title()).find()).toList();
+	}
+
+	@Benchmark
+	public List<Movie> trigramIndex() {
+		return index.select(query, movies);
+	}
+}
@@ -0,0 +1,183 @@
+package movies;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-route adaptive concurrency limits. Each route admits up to its current limit of requests at once, lets a bounded
+ * number more wait briefly for a slot, and turns the rest away immediately so they never pile up in the server's queue.
+ * The limit follows latency with a gradient: it grows while requests take about as long as they do without load, and
+ * shrinks in proportion once they take longer, which is the sign that requests are queueing for something.
+ * Admitted and waiting requests both hold a server thread, so across all routes together at most {@code maxTotal} of
+ * them are let in; whatever the limits add up to, the unlimited routes always find a thread.
+ */
+final class AdmissionControl {
+	private final Map<String, Limiter> limiters = new LinkedHashMap<>();
+	private final int maxLimit;
+	private final int maxQueue;
+	private final long maxWaitNanos;
+	private final Semaphore threads;
+
+	AdmissionControl(int maxLimit, int maxQueue, long maxWaitMillis, int maxTotal) {
+		this.maxLimit = maxLimit;
+		this.maxQueue = maxQueue;
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+		this.threads = new Semaphore(maxTotal);
+	}
+
+	/** Must be called before the server starts taking requests; unregistered paths are not limited. */
+	void register(String route) {
+		limiters.putIfAbsent(route, new Limiter(maxLimit, maxQueue, maxWaitNanos, threads));
+	}
+
+	/** The limiter of the path, or null when it is not limited. */
+	Limiter limiter(String path) {
+		return limiters.get(path);
+	}
+
+	void writePrometheus(StringBuilder out) {
+		out.append("# HELP movies_admission_limit Current concurrency limit, by route.\n");
+		out.append("# TYPE movies_admission_limit gauge\n");
+		limiters.forEach((route, limiter) -> out.append("movies_admission_limit{route=\"").append(route).append("\"} ").append(limiter.limit()).append('\n'));
+		out.append("# HELP movies_admission_in_flight Requests being handled, by route.\n");
+		out.append("# TYPE movies_admission_in_flight gauge\n");
+		limiters.forEach((route, limiter) -> out.append("movies_admission_in_flight{route=\"").append(route).append("\"} ").append(limiter.inFlight()).append('\n'));
+		out.append("# HELP movies_admission_rejected_total Requests turned away with a 503, by route.\n");
+		out.append("# TYPE movies_admission_rejected_total counter\n");
+		limiters.forEach((route, limiter) -> out.append("movies_admission_rejected_total{route=\"").append(route).append("\"} ").append(limiter.rejected()).append('\n'));
+	}
+
+	static final class Limiter {
+		private static final double INITIAL_LIMIT = 20;
+		private static final double MIN_LIMIT = 1;
+		// latency up to twice the unloaded latency still counts as normal, beyond that the limit shrinks
+		private static final double TOLERANCE = 2.0;
+		private static final double SMOOTHING = 0.2;
+		// the unloaded latency is the lowest seen, drifting up by this factor per request so it can follow real changes
+		private static final double BASELINE_DRIFT = 1.0001;
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition released = lock.newCondition();
+		private final double maxLimit;
+		private final int maxQueue;
+		private final long maxWaitNanos;
+		private final Semaphore threads;
+		private final LongAdder rejected = new LongAdder();
+		private double limit;
+		private double baseline;
+		private int inFlight;
+		private int waiting;
+
+		private Limiter(double maxLimit, int maxQueue, long maxWaitNanos, Semaphore threads) {
+			this.maxLimit = maxLimit;
+			this.maxQueue = maxQueue;
+			this.maxWaitNanos = maxWaitNanos;
+			this.threads = threads;
+			this.limit = Math.min(INITIAL_LIMIT, maxLimit);
+		}
+
+		/** Takes a slot, waiting for one if the queue has room; false when the request has to be turned away. */
+		boolean acquire() throws InterruptedException {
+			if (!threads.tryAcquire()) {
+				rejected.increment();
+				return false;
+			}
+			var admitted = false;
+			try {
+				admitted = admit();
+				return admitted;
+			} finally {
+				if (!admitted) {
+					threads.release();
+				}
+			}
+		}
+
+		private boolean admit() throws InterruptedException {
+			lock.lock();
+			try {
+				if (inFlight < (int) limit) {
+					inFlight++;
+					return true;
+				}
+				if (waiting >= maxQueue) {
+					rejected.increment();
+					return false;
+				}
+				waiting++;
+				try {
+					var remaining = maxWaitNanos;
+					while (inFlight >= (int) limit) {
+						if (remaining <= 0) {
+							rejected.increment();
+							return false;
+						}
+						remaining = released.awaitNanos(remaining);
+					}
+					inFlight++;
+					return true;
+				} finally {
+					waiting--;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/** Gives back the slot of a request that took {@code latencyNanos}; failed requests tell nothing about capacity. */
+		void release(long latencyNanos, boolean failed) {
+			lock.lock();
+			try {
+				var busy = inFlight;
+				inFlight--;
+				// A route that was far below its limit was not limited by it, so its latency says nothing about the limit
+				if (!failed && busy * 2 >= limit) {
+					update(latencyNanos);
+				}
+				released.signal();
+			} finally {
+				lock.unlock();
+			}
+			threads.release();
+		}
+
+		private void update(long latencyNanos) {
+			double latency = Math.max(latencyNanos, 1);
+			baseline = baseline == 0 ? latency : Math.min(latency, baseline * BASELINE_DRIFT);
+			var gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baseline / latency));
+			var target = limit * gradient + Math.sqrt(limit);
+			var previous = (int) limit;
+			limit = Math.max(MIN_LIMIT, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+			if ((int) limit > previous) {
+				released.signalAll();
+			}
+		}
+
+		int limit() {
+			lock.lock();
+			try {
+				return (int) limit;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		int inFlight() {
+			lock.lock();
+			try {
+				return inFlight;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		long rejected() {
+			return rejected.sum();
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package movies;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Text that stops being readable once a time budget is used up. Regex matching reads its input through
+ * {@link #charAt(int)}, so matching against this bounds the time any pattern, however much it backtracks,
+ * can take: the match aborts with {@link BudgetExceededException} instead.
+ * The clock runs from construction, and every chunk of a scan makes its own instance when it starts running,
+ * so the chunks draw on one shared budget only for the time they actually run and not for the time they wait for a scan thread.
+ * One instance is reset for text after text, so the reads are counted over a whole chunk and not per title.
+ */
+final class BudgetedCharSequence implements CharSequence {
+	// nanoTime is cheap but not free, and a backtracking matcher reads millions of chars per millisecond
+	private static final int CHECK_EVERY = 1024;
+
+	private final AtomicLong remainingNanos;
+	private long checkedAt = System.nanoTime();
+	private String text = "";
+	private int untilCheck = CHECK_EVERY;
+
+	BudgetedCharSequence(AtomicLong remainingNanos) {
+		this.remainingNanos = remainingNanos;
+	}
+
+	BudgetedCharSequence reset(String text) {
+		this.text = text;
+		return this;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (--untilCheck == 0) {
+			untilCheck = CHECK_EVERY;
+			var now = System.nanoTime();
+			if (remainingNanos.addAndGet(checkedAt - now) < 0) {
+				throw new BudgetExceededException();
+			}
+			checkedAt = now;
+		}
+		return text.charAt(index);
+	}
+
+	@Override
+	public int length() {
+		return text.length();
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return text.substring(start, end);
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+
+	/** Thrown when a query has used up its time. */
+	static final class BudgetExceededException extends RuntimeException {
+		BudgetExceededException() {
+			super("Query exceeded its time budget", null, false, false);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package movies;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Response stream that switches to gzip once the body outgrows {@code threshold} bytes, if the client accepts it.
+ * Smaller bodies are sent as they are: below a packet or so, compressing costs CPU and saves nothing on the wire.
+ * {@link #close()} finishes the body but leaves the servlet stream to the container.
+ */
+final class CompressingOutputStream extends OutputStream {
+	private final HttpServletResponse response;
+	private final boolean gzip;
+	private final byte[] pending;
+	private int pendingSize;
+	private OutputStream out;
+	private long written;
+
+	CompressingOutputStream(HttpServletResponse response, String acceptEncoding, int threshold) throws IOException {
+		this.response = response;
+		this.gzip = acceptsGzip(acceptEncoding);
+		this.pending = gzip ? new byte[threshold] : null;
+		this.out = gzip ? null : response.getOutputStream();
+	}
+
+	/** Whether an Accept-Encoding header allows gzip, explicitly or through "*", with a non-zero weight. */
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		var any = false;
+		for (var coding : acceptEncoding.split(",")) {
+			var parts = coding.split(";");
+			var name = parts[0].trim();
+			var accepted = parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+			if (name.equalsIgnoreCase("gzip")) {
+				return accepted;
+			}
+			any |= name.equals("*") && accepted;
+		}
+		return any;
+	}
+
+	/** Compresses a whole body once, trading a little more CPU than the streaming path for fewer bytes, since the result is cached. */
+	static byte[] gzip(byte[] body) {
+		var bytes = new ByteArrayOutputStream(body.length / 4);
+		try (var out = new GZIPOutputStream(bytes)) {
+			out.write(body);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		written++;
+		if (out == null && pendingSize < pending.length) {
+			pending[pendingSize++] = (byte) b;
+			return;
+		}
+		switchToGzip().write(b);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		written += length;
+		if (out == null && length <= pending.length - pendingSize) {
+			System.arraycopy(bytes, offset, pending, pendingSize, length);
+			pendingSize += length;
+			return;
+		}
+		switchToGzip().write(bytes, offset, length);
+	}
+
+	/** Bytes written so far, before compression. */
+	long written() {
+		return written;
+	}
+
+	private OutputStream switchToGzip() throws IOException {
+		if (out == null) {
+			response.setHeader("Content-Encoding", "gzip");
+			out = new FastGzipOutputStream(response.getOutputStream());
+			out.write(pending, 0, pendingSize);
+		}
+		return out;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// flushing a gzip stream early would only cost ratio; the container flushes when the body is done
+		if (out != null && !gzip) {
+			out.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (out == null) {
+			out = response.getOutputStream();
+			out.write(pending, 0, pendingSize);
+		} else if (out instanceof FastGzipOutputStream compressed) {
+			compressed.finishAndEnd();
+		}
+		response.getOutputStream().flush();
+	}
+
+	// Every streamed response is compressed again, so favour CPU over ratio
+	private static final class FastGzipOutputStream extends GZIPOutputStream {
+		FastGzipOutputStream(OutputStream out) throws IOException {
+			super(out, 8 * 1024);
+			def.setLevel(Deflater.BEST_SPEED);
+		}
+
+		// close() would close the servlet stream too, so release the native zlib state by hand
+		void finishAndEnd() throws IOException {
+			try {
+				finish();
+			} finally {
+				def.end();
+			}
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package movies;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * String table shared by all credits of one load: every distinct person name and crew role is stored once
+ * and credits refer to it by int id. Filled while credits are loaded, then sealed, which drops the reverse lookup.
+ * Sealed {@link Storage#OFF_HEAP} tables keep the text as UTF-8 in a direct buffer, outside the garbage-collected heap,
+ * and decode a string each time it is asked for.
+ */
+final class CreditDictionary {
+	enum Storage { HEAP, OFF_HEAP }
+
+	private Map<String, Integer> ids = new HashMap<>();
+	private List<String> pending = new ArrayList<>();
+	private String[] strings;
+	// OFF_HEAP: string i is text[offsets[i]..offsets[i + 1])
+	private ByteBuffer text;
+	private int[] offsets;
+
+	int id(String value) {
+		if (ids == null) {
+			throw new IllegalStateException("Dictionary is sealed");
+		}
+		var id = ids.get(value);
+		if (id == null) {
+			id = pending.size();
+			ids.put(value, id);
+			pending.add(value);
+		}
+		return id;
+	}
+
+	/** A sealed dictionary over strings previously taken from {@link #strings()}. */
+	static CreditDictionary of(String[] strings, Storage storage) {
+		var dictionary = new CreditDictionary();
+		dictionary.ids = null;
+		dictionary.pending = null;
+		dictionary.store(strings, storage);
+		return dictionary;
+	}
+
+	/** Freezes the table; only {@link #string(int)} lookups are allowed afterwards. */
+	CreditDictionary seal(Storage storage) {
+		var values = pending.toArray(String[]::new);
+		ids = null;
+		pending = null;
+		store(values, storage);
+		return this;
+	}
+
+	private void store(String[] values, Storage storage) {
+		if (storage == Storage.HEAP) {
+			strings = values;
+			return;
+		}
+		var encoded = new byte[values.length][];
+		offsets = new int[values.length + 1];
+		for (int i = 0; i < values.length; i++) {
+			encoded[i] = values[i].getBytes(StandardCharsets.UTF_8);
+			offsets[i + 1] = Math.addExact(offsets[i], encoded[i].length);
+		}
+		text = ByteBuffer.allocateDirect(offsets[values.length]);
+		for (var bytes : encoded) {
+			text.put(bytes);
+		}
+	}
+
+	String string(int id) {
+		if (strings != null) {
+			return strings[id];
+		}
+		var bytes = new byte[offsets[id + 1] - offsets[id]];
+		text.get(offsets[id], bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	String[] strings() {
+		if (strings != null) {
+			return strings.clone();
+		}
+		var values = new String[offsets.length - 1];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = string(i);
+		}
+		return values;
+	}
+
+	int size() {
+		return strings != null ? strings.length : offsets != null ? offsets.length - 1 : pending.size();
+	}
+
+	/** Bytes held outside the heap, 0 for {@link Storage#HEAP}. */
+	long offHeapBytes() {
+		return text != null ? text.capacity() : 0;
+	}
+}
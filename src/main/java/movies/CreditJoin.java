@@ -0,0 +1,93 @@
+package movies;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+
+import movies.Server.Credit;
+
+/**
+ * Join index from movie ordinal to the credits with that movie's id, resolved once at load.
+ * The credits of movie {@code m} are credit ordinals {@code credits[from[m]..to[m])}, in the order they were loaded,
+ * so looking them up is a few array reads with no hashing or boxing. Movies sharing an id share a range.
+ */
+final class CreditJoin {
+	private final List<Credit> creditList;
+	private final int[] from;
+	private final int[] to;
+	private final int[] credits;
+
+	private CreditJoin(List<Credit> creditList, int[] from, int[] to, int[] credits) {
+		this.creditList = creditList;
+		this.from = from;
+		this.to = to;
+		this.credits = credits;
+	}
+
+	static <M> CreditJoin build(List<M> movies, Function<M, String> movieId, List<Credit> credits) {
+		// String ids are hashed here, once, and never again while serving.
+		// Credits are grouped under the first movie with their id; later movies with the same id reuse that group.
+		var groupOfId = new HashMap<String, Integer>(movies.size() * 2);
+		var group = new int[movies.size()];
+		for (int ordinal = 0; ordinal < movies.size(); ordinal++) {
+			group[ordinal] = groupOfId.computeIfAbsent(movieId.apply(movies.get(ordinal)), id -> groupOfId.size());
+		}
+		var groups = groupOfId.size();
+
+		var groupOf = new int[credits.size()];
+		var offsets = new int[groups + 1];
+		for (int c = 0; c < groupOf.length; c++) {
+			var g = groupOfId.get(credits.get(c).id);
+			groupOf[c] = g != null ? g : -1;
+			if (g != null) {
+				offsets[g + 1]++;
+			}
+		}
+		for (int g = 0; g < groups; g++) {
+			offsets[g + 1] += offsets[g];
+		}
+		var joined = new int[offsets[groups]];
+		var next = Arrays.copyOf(offsets, groups);
+		for (int c = 0; c < groupOf.length; c++) {
+			if (groupOf[c] >= 0) {
+				joined[next[groupOf[c]]++] = c;
+			}
+		}
+
+		var from = new int[movies.size()];
+		var to = new int[movies.size()];
+		for (int ordinal = 0; ordinal < movies.size(); ordinal++) {
+			from[ordinal] = offsets[group[ordinal]];
+			to[ordinal] = offsets[group[ordinal] + 1];
+		}
+		return new CreditJoin(credits, from, to, joined);
+	}
+
+	/** The first credit of the movie, or null when it has none. */
+	Credit first(int movie) {
+		return from[movie] < to[movie] ? creditList.get(credits[from[movie]]) : null;
+	}
+
+	int count(int movie) {
+		return to[movie] - from[movie];
+	}
+
+	/** The {@code i}th credit of the movie, {@code i} below {@link #count(int)}. */
+	Credit credit(int movie, int i) {
+		return creditList.get(credits[from[movie] + i]);
+	}
+
+	/** All credits of the movie in load order, or null when it has none, the same as a lookup in a map grouped by id. */
+	List<Credit> all(int movie) {
+		var count = to[movie] - from[movie];
+		if (count == 0) {
+			return null;
+		}
+		var all = new Credit[count];
+		for (int i = 0; i < count; i++) {
+			all[i] = creditList.get(credits[from[movie] + i]);
+		}
+		return List.of(all);
+	}
+}
@@ -0,0 +1,28 @@
+package movies;
+
+import java.util.List;
+
+import movies.Server.Credit;
+import movies.Server.Movie;
+
+/**
+ * Everything the endpoints read, built together and never modified afterwards.
+ * Movies are identified by their ordinal, their position in movies, which titleIndex, releaseDates and creditJoin share.
+ * {@code version} is unique to every load, also across restarts, and identifies the data in ETags.
+ * {@code creditsFingerprint} is the credits source fingerprint taken before the credits were read, so a change made
+ * while they load still counts as a change afterwards.
+ */
+record Dataset(
+	long version,
+	List<Movie> movies,
+	List<Credit> credits,
+	long creditsFingerprint,
+	CreditJoin creditJoin,
+	TitleIndex titleIndex,
+	ReleaseDateIndex<Movie> releaseDates
+) {
+	/** The first credit of the movie at {@code ordinal}, or null. */
+	Credit creditFor(int ordinal) {
+		return creditJoin.first(ordinal);
+	}
+}
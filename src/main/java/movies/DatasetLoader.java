@@ -0,0 +1,138 @@
+package movies;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import movies.Server.Credit;
+import movies.Server.Movie;
+
+/**
+ * Builds a {@link Dataset} with every independent phase running concurrently:
+ * movies and credits load side by side, and each derived structure starts as soon as its inputs are ready.
+ *
+ * <pre>
+ * movies  --+-- titleIndex
+ *           +-- releaseDates
+ *           +--+-- creditJoin
+ * credits -----+
+ * </pre>
+ *
+ * Movies and credits come from the binary snapshot instead when it is fresh, and a new snapshot is written in the
+ * background after every load that had to go to the sources.
+ */
+final class DatasetLoader {
+	private static final Logger LOG = LoggerFactory.getLogger(DatasetLoader.class);
+
+	private final Supplier<List<Movie>> movieSource;
+	private final Supplier<List<Credit>> creditSource;
+	private final LongSupplier creditsFingerprint;
+	private final DatasetSnapshot snapshot;
+	private final ExecutorService executor;
+	private final Map<String, Long> phaseMillis = new ConcurrentHashMap<>();
+	// seeded from the clock so a restarted server does not hand out the versions of the previous process again
+	private final AtomicLong versions = new AtomicLong(System.currentTimeMillis());
+
+	private record Credits(List<Credit> credits, long fingerprint) { }
+
+	/** {@code snapshot} may be null, in which case every load goes to the sources. */
+	DatasetLoader(Supplier<List<Movie>> movieSource, Supplier<List<Credit>> creditSource, LongSupplier creditsFingerprint, DatasetSnapshot snapshot) {
+		this.movieSource = movieSource;
+		this.creditSource = creditSource;
+		this.creditsFingerprint = creditsFingerprint;
+		this.snapshot = snapshot;
+		var threads = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(4, task -> {
+			var thread = new Thread(task, "dataset-loader-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/** Loads the dataset, from the snapshot when {@code useSnapshot} is set and it is fresh. */
+	CompletableFuture<Dataset> load(boolean useSnapshot) {
+		var started = System.nanoTime();
+		var restored = snapshot == null || !useSnapshot
+			? CompletableFuture.completedFuture(Optional.<DatasetSnapshot.Contents>empty())
+			: CompletableFuture.supplyAsync(timed("snapshot", snapshot::read), executor);
+		var movies = restored.thenCompose(contents -> contents
+			.map(c -> CompletableFuture.completedFuture(c.movies()))
+			.orElseGet(() -> CompletableFuture.supplyAsync(timed("movies", movieSource), executor)));
+		var credits = restored.thenCompose(contents -> contents
+			.map(c -> CompletableFuture.completedFuture(new Credits(c.credits(), c.creditsFingerprint())))
+			.orElseGet(() -> CompletableFuture.supplyAsync(timed("credits", () -> {
+				var fingerprint = creditsFingerprint.getAsLong();
+				return new Credits(creditSource.get(), fingerprint);
+			}), executor)));
+
+		var titleIndex = movies.thenApplyAsync(timed("titleIndex", (List<Movie> m) -> TitleIndex.build(m, Movie::title)), executor);
+		var releaseDates = movies.thenApplyAsync(timed("releaseDates", (List<Movie> m) -> ReleaseDateIndex.build(m, Movie::releaseDate)), executor);
+		var creditJoin = movies.thenCombineAsync(credits, (m, c) -> timed("creditJoin", () -> CreditJoin.build(m, Movie::id, c.credits())).get(), executor);
+
+		return CompletableFuture.allOf(titleIndex, releaseDates, creditJoin).thenApply(done -> {
+			var dataset = new Dataset(versions.incrementAndGet(), movies.join(), credits.join().credits(), credits.join().fingerprint(),
+				creditJoin.join(), titleIndex.join(), releaseDates.join());
+			var total = (System.nanoTime() - started) / 1_000_000;
+			phaseMillis.put("total", total);
+			LOG.info("Dataset ready in " + total + " ms: " + dataset.movies().size() + " movies, " + dataset.credits().size() + " credits");
+			if (snapshot != null && restored.join().isEmpty()) {
+				// also after a refresh, so the next restart starts from the newest data
+				executor.execute(() -> writeSnapshot(dataset));
+			}
+			return dataset;
+		});
+	}
+
+	private void writeSnapshot(Dataset dataset) {
+		try {
+			timed("snapshotWrite", () -> {
+				try {
+					snapshot.write(dataset.movies(), dataset.credits(), dataset.creditsFingerprint());
+					return null;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).get();
+		} catch (RuntimeException e) {
+			LOG.warn("Failed to write the dataset snapshot, the next start will load from the sources again", e);
+		}
+	}
+
+	/** Wall-clock milliseconds of every phase that has finished so far, plus "total" once the dataset is built. */
+	Map<String, Long> phaseMillis() {
+		return Map.copyOf(phaseMillis);
+	}
+
+	private <T> Supplier<T> timed(String phase, Supplier<T> step) {
+		return () -> {
+			var event = new DatasetPhaseEvent();
+			event.phase = phase;
+			event.begin();
+			var started = System.nanoTime();
+			var result = step.get();
+			event.commit();
+			var elapsed = (System.nanoTime() - started) / 1_000_000;
+			phaseMillis.put(phase, elapsed);
+			LOG.info("Loading phase " + phase + " took " + elapsed + " ms");
+			return result;
+		};
+	}
+
+	private <T, R> Function<T, R> timed(String phase, Function<T, R> step) {
+		return input -> timed(phase, () -> step.apply(input)).get();
+	}
+}
@@ -0,0 +1,17 @@
+package movies;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** One phase of building a dataset: loading movies or credits, restoring the snapshot, or building an index. */
+@Name("movies.DatasetPhase")
+@Label("Dataset Phase")
+@Category({ "Movies API", "Dataset" })
+@StackTrace(false)
+final class DatasetPhaseEvent extends Event {
+	@Label("Phase")
+	String phase;
+}
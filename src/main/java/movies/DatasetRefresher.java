@@ -0,0 +1,95 @@
+package movies;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the live {@link Dataset} current without a restart. A new dataset is built off the request path by the
+ * {@link DatasetLoader} and published with a single swap of the shared reference; requests that already read the old one
+ * finish against it, and it is garbage once they are done.
+ * Refreshes happen when the polled source fingerprint changes or when one is requested, and never overlap.
+ */
+final class DatasetRefresher {
+	private static final Logger LOG = LoggerFactory.getLogger(DatasetRefresher.class);
+
+	private final DatasetLoader loader;
+	private final AtomicReference<Dataset> live;
+	private final LongSupplier sourceFingerprint;
+	private final Duration pollInterval;
+	private final AtomicReference<CompletableFuture<Dataset>> inFlight = new AtomicReference<>();
+	private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(task -> {
+		var thread = new Thread(task, "dataset-refresher");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private volatile long lastFingerprint;
+
+	DatasetRefresher(DatasetLoader loader, AtomicReference<Dataset> live, LongSupplier sourceFingerprint, Duration pollInterval) {
+		this.loader = loader;
+		this.live = live;
+		this.sourceFingerprint = sourceFingerprint;
+		this.pollInterval = pollInterval;
+	}
+
+	/**
+	 * Starts polling, using the fingerprint the live dataset was loaded with as the baseline, so changes made while the
+	 * server was down or since the snapshot was written are picked up on the first poll. Does nothing for a zero interval.
+	 */
+	void start() {
+		if (pollInterval.isZero()) {
+			return;
+		}
+		lastFingerprint = live.get().creditsFingerprint();
+		poller.scheduleWithFixedDelay(this::poll, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+		LOG.info("Polling for dataset changes every " + pollInterval);
+	}
+
+	private void poll() {
+		try {
+			var fingerprint = sourceFingerprint.getAsLong();
+			if (fingerprint != lastFingerprint) {
+				LOG.info("Dataset sources changed, refreshing");
+				refresh();
+			}
+		} catch (RuntimeException e) {
+			// keep serving the current dataset and try again on the next poll
+			LOG.warn("Failed to check the dataset sources for changes", e);
+		}
+	}
+
+	/**
+	 * Reloads from the sources, bypassing the snapshot, and publishes the result.
+	 * While a refresh is running every caller gets that same refresh.
+	 */
+	CompletableFuture<Dataset> refresh() {
+		var next = new CompletableFuture<Dataset>();
+		var running = inFlight.compareAndExchange(null, next);
+		if (running != null) {
+			return running;
+		}
+		loader.load(false).whenComplete((dataset, failure) -> {
+			if (failure != null) {
+				LOG.error("Dataset refresh failed, still serving the previous dataset", failure);
+			} else {
+				live.set(dataset);
+				lastFingerprint = dataset.creditsFingerprint();
+				LOG.info("Published refreshed dataset: " + dataset.movies().size() + " movies, " + dataset.credits().size() + " credits");
+			}
+			inFlight.set(null);
+			if (failure != null) {
+				next.completeExceptionally(failure);
+			} else {
+				next.complete(dataset);
+			}
+		});
+		return next;
+	}
+}
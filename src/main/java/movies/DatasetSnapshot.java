@@ -0,0 +1,244 @@
+package movies;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import movies.Server.Credit;
+import movies.Server.CrewRole;
+import movies.Server.Movie;
+
+/**
+ * Binary copy of the loaded movies and credits, read back through a memory-mapped file so a restart skips the JSON parse
+ * and the mongo round trip. A snapshot is only used when its format version, payload checksum, movies and credits
+ * fingerprints and age all check out; otherwise the caller falls back to loading from the sources.
+ *
+ * <pre>
+ * header:  magic, format version, created at (epoch millis), movies fingerprint, credits fingerprint, payload length, payload CRC32
+ * payload: movies (7 nullable strings each), credit dictionary strings, credits (id, encoded people, role counts)
+ * </pre>
+ */
+final class DatasetSnapshot {
+	private static final Logger LOG = LoggerFactory.getLogger(DatasetSnapshot.class);
+	private static final int MAGIC = 0x4d56534e; // "MVSN"
+	// Bump whenever the payload layout, Movie, Credit or CrewRole change shape
+	private static final int FORMAT_VERSION = 2;
+	private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8 + 8 + 8;
+	private static final int NULL_STRING = -1;
+
+	/** {@code creditsFingerprint} is the one the credits were written with, which matched the source when they were read. */
+	record Contents(List<Movie> movies, List<Credit> credits, long creditsFingerprint) { }
+
+	private final Path path;
+	private final Duration maxAge;
+	private final LongSupplier moviesFingerprint;
+	private final LongSupplier creditsFingerprint;
+	private final CreditDictionary.Storage storage;
+
+	/** Restored credits keep their names in {@code storage}, like freshly loaded ones. */
+	DatasetSnapshot(Path path, Duration maxAge, LongSupplier moviesFingerprint, LongSupplier creditsFingerprint, CreditDictionary.Storage storage) {
+		this.path = path;
+		this.maxAge = maxAge;
+		this.moviesFingerprint = moviesFingerprint;
+		this.creditsFingerprint = creditsFingerprint;
+		this.storage = storage;
+	}
+
+	/** The snapshot's contents, or empty when there is none or it is stale, corrupt or from another format version. */
+	Optional<Contents> read() {
+		try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+				return rejected("not a dataset snapshot");
+			}
+			if (buffer.getInt() != FORMAT_VERSION) {
+				return rejected("written by another format version");
+			}
+			var age = Duration.ofMillis(System.currentTimeMillis() - buffer.getLong());
+			if (age.compareTo(maxAge) > 0) {
+				return rejected("older than " + maxAge);
+			}
+			if (buffer.getLong() != moviesFingerprint.getAsLong()) {
+				return rejected("the movie data has changed since it was written");
+			}
+			var writtenCreditsFingerprint = buffer.getLong();
+			if (!creditsUnchanged(writtenCreditsFingerprint)) {
+				return rejected("the credits have changed since it was written");
+			}
+			var payloadLength = buffer.getLong();
+			var expectedCrc = buffer.getLong();
+			if (payloadLength != buffer.remaining()) {
+				return rejected("truncated");
+			}
+			var crc = new CRC32();
+			crc.update(buffer.duplicate());
+			if (crc.getValue() != expectedCrc) {
+				return rejected("checksum mismatch");
+			}
+			return Optional.of(readPayload(buffer, storage, writtenCreditsFingerprint));
+		} catch (NoSuchFileException e) {
+			return rejected("not found");
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("Dataset snapshot " + path + " is unreadable, loading from the sources", e);
+			return Optional.empty();
+		}
+	}
+
+	// Without mongo there is nothing to compare against: trust the age check, the refresher catches up once mongo is back
+	private boolean creditsUnchanged(long written) {
+		try {
+			return creditsFingerprint.getAsLong() == written;
+		} catch (RuntimeException e) {
+			LOG.warn("Could not check the credits for changes, using the dataset snapshot " + path + " by its age alone", e);
+			return true;
+		}
+	}
+
+	private Optional<Contents> rejected(String reason) {
+		LOG.info("Not using dataset snapshot " + path + ": " + reason);
+		return Optional.empty();
+	}
+
+	private static Contents readPayload(ByteBuffer in, CreditDictionary.Storage storage, long creditsFingerprint) {
+		var scratch = new byte[4096];
+		var movieCount = in.getInt();
+		var movies = new ArrayList<Movie>(movieCount);
+		for (int i = 0; i < movieCount; i++) {
+			movies.add(new Movie(string(in, scratch), string(in, scratch), string(in, scratch), string(in, scratch),
+				string(in, scratch), string(in, scratch), string(in, scratch)));
+		}
+
+		var strings = new String[in.getInt()];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = string(in, scratch);
+		}
+		var dictionary = CreditDictionary.of(strings, storage);
+
+		var creditCount = in.getInt();
+		var credits = new ArrayList<Credit>(creditCount);
+		for (int i = 0; i < creditCount; i++) {
+			var id = string(in, scratch);
+			var people = ints(in);
+			var roleCounts = ints(in);
+			if (roleCounts.length != CrewRole.VALUES.length) {
+				throw new IllegalStateException("Snapshot has " + roleCounts.length + " crew roles, expected " + CrewRole.VALUES.length);
+			}
+			credits.add(new Credit(id, people, roleCounts, dictionary));
+		}
+		return new Contents(List.copyOf(movies), List.copyOf(credits), creditsFingerprint);
+	}
+
+	private static String string(ByteBuffer in, byte[] scratch) {
+		var length = in.getInt();
+		if (length == NULL_STRING) {
+			return null;
+		}
+		var bytes = length <= scratch.length ? scratch : new byte[length];
+		in.get(bytes, 0, length);
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private static int[] ints(ByteBuffer in) {
+		var values = new int[in.getInt()];
+		in.asIntBuffer().get(values);
+		in.position(in.position() + values.length * 4);
+		return values;
+	}
+
+	/**
+	 * Writes a new snapshot next to the old one and swaps it in, so readers never see a half-written file.
+	 * {@code creditsFingerprint} is the credits source fingerprint from before {@code credits} were read.
+	 */
+	void write(List<Movie> movies, List<Credit> credits, long creditsFingerprint) throws IOException {
+		var temp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.position(HEADER_BYTES);
+			var crc = new CRC32();
+			var out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(Channels.newOutputStream(channel), crc), 64 * 1024));
+			writePayload(out, movies, credits);
+			out.flush();
+
+			var header = ByteBuffer.allocate(HEADER_BYTES)
+				.putInt(MAGIC)
+				.putInt(FORMAT_VERSION)
+				.putLong(System.currentTimeMillis())
+				.putLong(moviesFingerprint.getAsLong())
+				.putLong(creditsFingerprint)
+				.putLong(channel.size() - HEADER_BYTES)
+				.putLong(crc.getValue())
+				.flip();
+			channel.write(header, 0);
+			channel.force(true);
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void writePayload(DataOutputStream out, List<Movie> movies, List<Credit> credits) throws IOException {
+		out.writeInt(movies.size());
+		for (var movie : movies) {
+			writeString(out, movie.id());
+			writeString(out, movie.originalTitle());
+			writeString(out, movie.overview());
+			writeString(out, movie.releaseDate());
+			writeString(out, movie.tagline());
+			writeString(out, movie.title());
+			writeString(out, movie.voteAverage());
+		}
+
+		// Every credit of one load shares a dictionary, but be safe against a mix and only accept a single one
+		var dictionaries = new IdentityHashMap<CreditDictionary, Boolean>();
+		credits.forEach(credit -> dictionaries.put(credit.dictionary(), true));
+		if (dictionaries.size() > 1) {
+			throw new IllegalStateException("Credits from " + dictionaries.size() + " different loads");
+		}
+		var strings = dictionaries.isEmpty() ? new String[0] : dictionaries.keySet().iterator().next().strings();
+		out.writeInt(strings.length);
+		for (var string : strings) {
+			writeString(out, string);
+		}
+
+		out.writeInt(credits.size());
+		for (var credit : credits) {
+			writeString(out, credit.id);
+			writeInts(out, credit.people());
+			writeInts(out, credit.roleCounts);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(NULL_STRING);
+			return;
+		}
+		var bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		for (var value : values) {
+			out.writeInt(value);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package movies;
+
+import java.nio.charset.StandardCharsets;
+import java.util.TreeSet;
+
+import com.google.common.hash.Hashing;
+
+import spark.Request;
+
+/**
+ * Strong entity tags for responses that are a pure function of the dataset and the request parameters.
+ * The tag is the dataset version plus a 128-bit hash of the path and normalized query parameters,
+ * so it can be computed, and compared to If-None-Match, before anything is searched or serialized.
+ */
+final class ETags {
+	private ETags() { }
+
+	/** {@code gzip} marks the gzip representation, which has different bytes and so needs a different strong tag. */
+	static String of(long datasetVersion, Request req, boolean gzip) {
+		var request = new StringBuilder(req.pathInfo());
+		// sorted, so the order parameters come in does not matter
+		for (var name : new TreeSet<>(req.queryParams())) {
+			var value = req.queryParams(name);
+			if ((name.equals("q") || name.equals("query")) && TitleIndex.isLiteral(value)) {
+				value = TitleIndex.fold(value);
+			}
+			request.append('&').append(name).append('=').append(value);
+		}
+		var hash = Hashing.murmur3_128().hashString(request, StandardCharsets.UTF_8);
+		return "\"" + Long.toHexString(datasetVersion) + "-" + hash + (gzip ? "-gz" : "") + "\"";
+	}
+
+	/** Whether an If-None-Match header lists {@code etag}, using the weak comparison RFC 9110 asks for here. */
+	static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (var candidate : ifNoneMatch.split(",")) {
+			var tag = candidate.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals(etag) || tag.equals("*")) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,90 @@
+package movies;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Compact UTF-8 JSON of immutable values, serialized once and then copied into responses.
+ * Keys are held weakly and compared by identity, and the total size of the cached fragments is capped,
+ * least recently used first out.
+ */
+final class FragmentCache {
+	private static final byte[] NULL = "null".getBytes(StandardCharsets.UTF_8);
+
+	private final Gson gson;
+	private final Set<Class<?>> cacheable;
+	private final Cache<Object, byte[]> fragments;
+
+	FragmentCache(Gson gson, long maxBytes, Set<Class<?>> cacheable) {
+		this.gson = gson;
+		this.cacheable = cacheable;
+		this.fragments = CacheBuilder.newBuilder()
+			.weakKeys()
+			.maximumWeight(maxBytes)
+			.weigher((Object key, byte[] fragment) -> fragment.length)
+			.recordStats()
+			.build();
+	}
+
+	/** Values that write their own compact JSON, typically out of the fragments of the values they are made of. */
+	interface Streamable {
+		void writeTo(ResponseWriter out, FragmentCache fragments) throws IOException;
+	}
+
+	/** Writes {@code data} as compact JSON, using cached fragments for cacheable values, also inside lists. */
+	void write(ResponseWriter out, Object data) throws IOException {
+		if (data == null) {
+			out.writeRaw(NULL);
+		} else if (data instanceof Streamable streamable) {
+			streamable.writeTo(out, this);
+		} else if (cacheable.contains(data.getClass())) {
+			out.writeRaw(fragment(data));
+		} else if (data instanceof List<?> list) {
+			out.write('[');
+			for (int i = 0; i < list.size(); i++) {
+				if (i > 0) {
+					out.write(',');
+				}
+				write(out, list.get(i));
+			}
+			out.write(']');
+		} else {
+			var json = new JsonWriter(out);
+			gson.toJson(data, data.getClass(), json);
+			json.flush();
+		}
+	}
+
+	byte[] fragment(Object value) {
+		try {
+			return fragments.get(value, () -> serialize(value));
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			throw new IllegalStateException("Failed to serialize " + value.getClass().getSimpleName(), e.getCause());
+		}
+	}
+
+	private byte[] serialize(Object value) {
+		var json = new StringWriter();
+		gson.toJson(value, value.getClass(), new JsonWriter(json));
+		return json.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	CacheStats stats() {
+		return fragments.stats();
+	}
+
+	long size() {
+		return fragments.size();
+	}
+}
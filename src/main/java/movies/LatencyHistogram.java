@@ -0,0 +1,84 @@
+package movies;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size, lock-free latency histogram with HDR-style log-linear buckets:
+ * every power of two is split into {@value #SUB_BUCKETS} linear sub-buckets, which keeps the relative error
+ * under 1/{@value #SUB_BUCKETS} from a microsecond up to the largest recordable value.
+ * Recording is a couple of atomic increments and never allocates.
+ */
+final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// 2^40 microseconds is about 12 days, anything above is clamped into the last bucket
+	private static final int MAX_EXPONENT = 40;
+	static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder totalMicros = new LongAdder();
+
+	void recordNanos(long nanos) {
+		var micros = Math.max(0, nanos / 1_000);
+		counts.incrementAndGet(bucketOf(micros));
+		totalMicros.add(micros);
+	}
+
+	static int bucketOf(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+		var exponent = 63 - Long.numberOfLeadingZeros(micros);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKET_COUNT - 1;
+		}
+		var shift = exponent - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS;
+	}
+
+	/** Largest value, in microseconds, that lands in {@code bucket}. */
+	static long upperBoundMicros(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		var shift = bucket / SUB_BUCKETS - 1;
+		var subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+		return ((long) (subBucket + 1) << shift) - 1;
+	}
+
+	/** A point-in-time copy; concurrent recordings may or may not be part of it. */
+	Snapshot snapshot() {
+		var copy = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			copy[i] = counts.get(i);
+			total += copy[i];
+		}
+		return new Snapshot(copy, total, totalMicros.sum());
+	}
+
+	record Snapshot(long[] counts, long count, long sumMicros) {
+		/** Number of recorded values that are at most {@code micros}, counting whole buckets only. */
+		long countAtMost(long micros) {
+			long cumulative = 0;
+			for (int i = 0; i < counts.length && upperBoundMicros(i) <= micros; i++) {
+				cumulative += counts[i];
+			}
+			return cumulative;
+		}
+
+		/** Upper bound, in microseconds, of the bucket holding the given quantile. */
+		long quantileMicros(double quantile) {
+			var rank = (long) Math.ceil(quantile * count);
+			long cumulative = 0;
+			for (int i = 0; i < counts.length; i++) {
+				cumulative += counts[i];
+				if (cumulative >= rank && cumulative > 0) {
+					return upperBoundMicros(i);
+				}
+			}
+			return 0;
+		}
+	}
+}
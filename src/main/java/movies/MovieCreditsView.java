@@ -0,0 +1,68 @@
+package movies;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import movies.Server.Movie;
+import movies.Server.MovieWithCredits;
+
+/**
+ * The movies at some ordinals, each joined with its credits only when it is written out.
+ * Compact JSON is streamed straight from the movie and credit fragments, or from the credits themselves when they are not
+ * cacheable, in the shape Gson gives {@link MovieWithCredits};
+ * only reflective serialization, as for pretty printing, goes through {@link #get(int)} and its short-lived records.
+ */
+final class MovieCreditsView extends AbstractList<MovieWithCredits> implements RandomAccess, FragmentCache.Streamable {
+	private static final byte[] MOVIE = "{\"movie\":".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] CREDITS = ",\"credits\":[".getBytes(StandardCharsets.UTF_8);
+
+	private final List<Movie> movies;
+	private final CreditJoin join;
+	private final int[] ordinals;
+
+	MovieCreditsView(List<Movie> movies, CreditJoin join, int[] ordinals) {
+		this.movies = movies;
+		this.join = join;
+		this.ordinals = ordinals;
+	}
+
+	@Override
+	public MovieWithCredits get(int index) {
+		return new MovieWithCredits(movies.get(ordinals[index]), join.all(ordinals[index]));
+	}
+
+	@Override
+	public int size() {
+		return ordinals.length;
+	}
+
+	@Override
+	public void writeTo(ResponseWriter out, FragmentCache fragments) throws IOException {
+		out.write('[');
+		for (int i = 0; i < ordinals.length; i++) {
+			if (i > 0) {
+				out.write(',');
+			}
+			var ordinal = ordinals[i];
+			out.writeRaw(MOVIE);
+			fragments.write(out, movies.get(ordinal));
+			// Gson leaves out null fields, so a movie without credits has no "credits" at all
+			var count = join.count(ordinal);
+			if (count > 0) {
+				out.writeRaw(CREDITS);
+				for (int c = 0; c < count; c++) {
+					if (c > 0) {
+						out.write(',');
+					}
+					fragments.write(out, join.credit(ordinal, c));
+				}
+				out.write(']');
+			}
+			out.write('}');
+		}
+		out.write(']');
+	}
+}
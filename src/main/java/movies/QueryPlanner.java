@@ -0,0 +1,73 @@
+package movies;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Decides how a title query is answered, so every endpoint matches titles the same way:
+ * literals go through the trigram index over case-folded titles, anything with regex syntax
+ * is compiled once into a bounded, least-recently-used cache and scanned with find().
+ * Both paths ignore case with the same Unicode-aware folding.
+ * A regex scan whose chunks run for longer than the time budget in total is abandoned, so no pattern can hold the scan threads for long.
+ */
+final class QueryPlanner {
+	private static final int PATTERN_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+
+	private final Cache<String, Pattern> patterns;
+	private final ScanEngine scans;
+	private final long budgetNanos;
+	private final LongAdder overBudget = new LongAdder();
+
+	QueryPlanner(long maxPatterns, ScanEngine scans, Duration regexBudget) {
+		this.scans = scans;
+		this.budgetNanos = regexBudget.toNanos();
+		this.patterns = CacheBuilder.newBuilder()
+			.maximumSize(maxPatterns)
+			.recordStats()
+			.build();
+	}
+
+	/**
+	 * Ascending ordinals of the titles in {@code index} that match {@code query}.
+	 * Throws {@link BudgetedCharSequence.BudgetExceededException} when a regex scan runs for longer than the budget.
+	 */
+	int[] select(TitleIndex index, String query) {
+		if (TitleIndex.isLiteral(query)) {
+			return index.search(query, scans);
+		}
+		var pattern = pattern(query);
+		try {
+			return index.scan(pattern, scans, budgetNanos);
+		} catch (BudgetedCharSequence.BudgetExceededException e) {
+			overBudget.increment();
+			throw e;
+		}
+	}
+
+	/** The compiled form of a regex query; an invalid one throws PatternSyntaxException and is not cached. */
+	Pattern pattern(String query) {
+		var pattern = patterns.getIfPresent(query);
+		if (pattern == null) {
+			pattern = Pattern.compile(query, PATTERN_FLAGS);
+			patterns.put(query, pattern);
+		}
+		return pattern;
+	}
+
+	long overBudget() {
+		return overBudget.sum();
+	}
+
+	CacheStats stats() {
+		return patterns.stats();
+	}
+
+	long size() {
+		return patterns.size();
+	}
+}
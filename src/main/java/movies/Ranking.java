@@ -0,0 +1,101 @@
+package movies;
+
+import java.util.Arrays;
+
+/**
+ * A fixed total order over the ordinals of a list, stored both ways round so pages of any subset can be cut
+ * without sorting it: a page is the {@code limit} best-ranked ordinals after a given rank, picked with a bounded heap.
+ */
+final class Ranking {
+	// order[rank] is the ordinal at that position, rank[ordinal] its position
+	private final int[] order;
+	private final int[] rank;
+
+	Ranking(int[] order) {
+		this.order = order;
+		this.rank = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			rank[order[i]] = i;
+		}
+	}
+
+	int rankOf(int ordinal) {
+		return rank[ordinal];
+	}
+
+	int size() {
+		return order.length;
+	}
+
+	/** Ordinals ranked after {@code after} (-1 for the start), at most {@code limit} of them, in rank order. */
+	int[] page(int after, int limit) {
+		var from = Math.min(Math.max(after + 1, 0), order.length);
+		return Arrays.copyOfRange(order, from, (int) Math.min((long) from + limit, order.length));
+	}
+
+	/**
+	 * Like {@link #page(int, int)}, restricted to {@code ordinals}.
+	 * Keeps only the best {@code limit} candidates while scanning, so it is O(n log limit) and never sorts the whole set.
+	 */
+	int[] page(int[] ordinals, int after, int limit) {
+		// max-heap of ranks: the root is the worst of the best seen so far and the first to be replaced
+		var heap = new int[Math.min(limit, ordinals.length)];
+		var size = 0;
+		for (var ordinal : ordinals) {
+			var r = rank[ordinal];
+			if (r <= after) {
+				continue;
+			}
+			if (size < heap.length) {
+				heap[size] = r;
+				siftUp(heap, size++);
+			} else if (size > 0 && r < heap[0]) {
+				heap[0] = r;
+				siftDown(heap, size);
+			}
+		}
+		var page = Arrays.copyOf(heap, size);
+		Arrays.sort(page);
+		for (int i = 0; i < page.length; i++) {
+			page[i] = order[page[i]];
+		}
+		return page;
+	}
+
+	private static void siftUp(int[] heap, int at) {
+		while (at > 0) {
+			var parent = (at - 1) >>> 1;
+			if (heap[parent] >= heap[at]) {
+				return;
+			}
+			swap(heap, parent, at);
+			at = parent;
+		}
+	}
+
+	private static void siftDown(int[] heap, int size) {
+		var at = 0;
+		while (true) {
+			var largest = at;
+			var left = 2 * at + 1;
+			var right = left + 1;
+			if (left < size && heap[left] > heap[largest]) {
+				largest = left;
+			}
+			if (right < size && heap[right] > heap[largest]) {
+				largest = right;
+			}
+			if (largest == at) {
+				return;
+			}
+			swap(heap, at, largest);
+			at = largest;
+		}
+	}
+
+	private static void swap(int[] heap, int a, int b) {
+		var tmp = heap[a];
+		heap[a] = heap[b];
+		heap[b] = tmp;
+	}
+}
@@ -0,0 +1,120 @@
+package movies;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * Release dates parsed once into epoch days, plus a permanent newest-first ordering of the movie list.
+ * Malformed or missing dates sort last, the same way {@code LocalDate.MIN} does.
+ */
+final class ReleaseDateIndex<T> {
+	static final int UNKNOWN = Integer.MIN_VALUE;
+
+	private final List<T> items;
+	// newestFirst[i] is the ordinal at position i of the descending ordering, sortedDays[i] its release date
+	private final int[] newestFirst;
+	private final int[] sortedDays;
+	private final Ranking ranking;
+
+	private ReleaseDateIndex(List<T> items, int[] newestFirst, int[] sortedDays) {
+		this.items = items;
+		this.newestFirst = newestFirst;
+		this.sortedDays = sortedDays;
+		this.ranking = new Ranking(newestFirst);
+	}
+
+	static <T> ReleaseDateIndex<T> build(List<T> items, Function<T, String> releaseDate) {
+		var keys = new long[items.size()];
+		for (int ordinal = 0; ordinal < keys.length; ordinal++) {
+			// newest first, ties keep list order: sort ascending on (MAX_VALUE - day, ordinal), which needs 32 + 31 bits
+			keys[ordinal] = (((long) Integer.MAX_VALUE - epochDay(releaseDate.apply(items.get(ordinal)))) << 31) | ordinal;
+		}
+		Arrays.sort(keys);
+		var newestFirst = new int[keys.length];
+		var sortedDays = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			newestFirst[i] = (int) (keys[i] & Integer.MAX_VALUE);
+			sortedDays[i] = (int) (Integer.MAX_VALUE - (keys[i] >>> 31));
+		}
+		return new ReleaseDateIndex<>(items, newestFirst, sortedDays);
+	}
+
+	static int epochDay(String date) {
+		if (date == null) {
+			return UNKNOWN;
+		}
+		try {
+			return (int) LocalDate.parse(date).toEpochDay();
+		} catch (DateTimeParseException e) {
+			return UNKNOWN;
+		}
+	}
+
+	/**
+	 * First day of {@code year}, also accepting a year and month or a full ISO date.
+	 * Throws {@link DateTimeException} or {@link NumberFormatException} for anything else.
+	 */
+	static int cutoff(String year) {
+		return (int) switch (year.length()) {
+			case 4 -> LocalDate.of(Integer.parseInt(year), 1, 1).toEpochDay();
+			case 7 -> YearMonth.parse(year).atDay(1).toEpochDay();
+			default -> LocalDate.parse(year).toEpochDay();
+		};
+	}
+
+	/** The newest-first ordering, for paging through it. */
+	Ranking ranking() {
+		return ranking;
+	}
+
+	/** At most {@code limit} items released before {@code cutoffDay}, newest first. */
+	List<T> releasedBefore(int cutoffDay, int limit) {
+		// sortedDays is descending: find the first position whose day is below the cutoff
+		int low = 0, high = sortedDays.length;
+		while (low < high) {
+			var mid = (low + high) >>> 1;
+			if (sortedDays[mid] < cutoffDay) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return slice(low, (int) Math.min((long) low + Math.max(limit, 0), sortedDays.length));
+	}
+
+	private List<T> slice(int from, int to) {
+		return new Slice<>(items, newestFirst, from, to);
+	}
+
+	// A named class rather than an anonymous one: Gson refuses to serialize anonymous classes
+	private static final class Slice<T> extends AbstractList<T> implements RandomAccess {
+		private final List<T> items;
+		private final int[] ordinals;
+		private final int from;
+		private final int to;
+
+		Slice(List<T> items, int[] ordinals, int from, int to) {
+			this.items = items;
+			this.ordinals = ordinals;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public T get(int index) {
+			return items.get(ordinals[from + index]);
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+	}
+}
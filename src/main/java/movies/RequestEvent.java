@@ -0,0 +1,47 @@
+package movies;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One HTTP request, from the first filter to the last, so profiler samples on its thread can be tied to what it asked for.
+ * Without a recording running, creating and filling it costs a few field writes, so it stays on everywhere.
+ */
+@Name("movies.Request")
+@Label("Request")
+@Category({ "Movies API", "HTTP" })
+@StackTrace(false)
+final class RequestEvent extends Event {
+	@Label("Route")
+	String route;
+
+	@Label("Query")
+	@Description("The q parameter, folded to lower case when it is a literal")
+	String query;
+
+	@Label("Status")
+	int status;
+
+	@Label("Matched")
+	@Description("Movies that matched the query, -1 when the reply came from a cache and nothing was matched")
+	int matched = -1;
+
+	@Label("Computed")
+	@Description("Whether this request ran the query itself rather than reusing a cached or in-flight result")
+	boolean computed;
+
+	@Label("Result Size")
+	@Description("Uncompressed JSON bytes of the reply")
+	@DataAmount
+	long resultBytes;
+
+	@Label("Serialization Time")
+	@Timespan
+	long serializationNanos;
+}
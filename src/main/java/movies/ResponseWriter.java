@@ -0,0 +1,139 @@
+package movies;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * UTF-8 writer straight onto a response stream, encoding into a pooled buffer that is reused across requests,
+ * so writing a response costs the same handful of allocations no matter how large it is.
+ * {@link #close()} only flushes and returns the buffer: the servlet container owns the underlying stream.
+ */
+final class ResponseWriter extends Writer {
+	private static final int BUFFER_SIZE = 16 * 1024;
+	// A shared pool rather than a ThreadLocal: with virtual threads every request is a new thread
+	private static final int POOLED_BUFFERS = 256;
+	private static final ArrayBlockingQueue<byte[]> BUFFERS = new ArrayBlockingQueue<>(POOLED_BUFFERS);
+
+	private final OutputStream out;
+	private byte[] buffer = acquire();
+	private int position;
+	private char pendingHighSurrogate;
+
+	ResponseWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		encode((char) c);
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) throws IOException {
+		for (int i = offset; i < offset + length; i++) {
+			encode(chars[i]);
+		}
+	}
+
+	@Override
+	public void write(String s, int offset, int length) throws IOException {
+		for (int i = offset; i < offset + length; i++) {
+			encode(s.charAt(i));
+		}
+	}
+
+	/** Writes bytes that are already UTF-8 encoded, bypassing the encoder. */
+	void writeRaw(byte[] bytes, int offset, int length) throws IOException {
+		if (pendingHighSurrogate != 0) {
+			// the text before ends in half a pair, which the JDK also replaces
+			pendingHighSurrogate = 0;
+			encode('?');
+		}
+		if (length > buffer.length - position) {
+			drain();
+			if (length > buffer.length) {
+				out.write(bytes, offset, length);
+				return;
+			}
+		}
+		System.arraycopy(bytes, offset, buffer, position, length);
+		position += length;
+	}
+
+	void writeRaw(byte[] bytes) throws IOException {
+		writeRaw(bytes, 0, bytes.length);
+	}
+
+	private void encode(char c) throws IOException {
+		if (buffer.length - position < 4) {
+			drain();
+		}
+		if (pendingHighSurrogate != 0) {
+			var high = pendingHighSurrogate;
+			pendingHighSurrogate = 0;
+			if (Character.isLowSurrogate(c)) {
+				var codePoint = Character.toCodePoint(high, c);
+				buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+				return;
+			}
+			buffer[position++] = '?';
+			encode(c);
+			return;
+		}
+		if (c < 0x80) {
+			buffer[position++] = (byte) c;
+		} else if (c < 0x800) {
+			buffer[position++] = (byte) (0xC0 | (c >> 6));
+			buffer[position++] = (byte) (0x80 | (c & 0x3F));
+		} else if (Character.isHighSurrogate(c)) {
+			pendingHighSurrogate = c;
+		} else if (Character.isLowSurrogate(c)) {
+			// unpaired, same replacement the JDK's UTF-8 encoder uses
+			buffer[position++] = '?';
+		} else {
+			buffer[position++] = (byte) (0xE0 | (c >> 12));
+			buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+			buffer[position++] = (byte) (0x80 | (c & 0x3F));
+		}
+	}
+
+	private void drain() throws IOException {
+		if (position > 0) {
+			out.write(buffer, 0, position);
+			position = 0;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		drain();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (buffer == null) {
+			return;
+		}
+		try {
+			if (pendingHighSurrogate != 0) {
+				pendingHighSurrogate = 0;
+				encode('?');
+			}
+			flush();
+		} finally {
+			BUFFERS.offer(buffer);
+			buffer = null;
+		}
+	}
+
+	private static byte[] acquire() {
+		var pooled = BUFFERS.poll();
+		return pooled != null ? pooled : new byte[BUFFER_SIZE];
+	}
+}
@@ -0,0 +1,105 @@
+package movies;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Serialized response bodies keyed by route and normalized query.
+ * Every entry remembers the dataset generation it was computed from and is recomputed once that generation is replaced,
+ * so reloading the underlying data invalidates it without an explicit flush.
+ */
+final class ResultCache {
+	/**
+	 * A response body and the headers that belong with it, such as the cursor of the next page.
+	 * The gzipped body is compressed on the first request that accepts it and kept with the reply from then on,
+	 * so bodies only ever sent plain, or computed once and never cached, are not compressed for nothing.
+	 */
+	static final class Reply {
+		private final byte[] body;
+		private final Map<String, String> headers;
+		private volatile byte[] gzipped;
+
+		Reply(byte[] body, Map<String, String> headers) {
+			this.body = body;
+			this.headers = headers;
+		}
+
+		byte[] body() { return body; }
+		Map<String, String> headers() { return headers; }
+
+		// Racing requests may both compress it, to the same bytes, which is cheaper than making them wait
+		byte[] gzipped() {
+			var compressed = gzipped;
+			if (compressed == null) {
+				gzipped = compressed = CompressingOutputStream.gzip(body);
+			}
+			return compressed;
+		}
+	}
+
+	private record Entry(Object generation, Reply reply) { }
+
+	private final Cache<String, Entry> results;
+	private final long maxEntryBytes;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	ResultCache(long maxBytes) {
+		// Guava splits the weight budget across segments, so anything above this would be evicted straight away
+		this.maxEntryBytes = maxBytes / 8;
+		this.results = CacheBuilder.newBuilder()
+			.maximumWeight(maxBytes)
+			.weigher((String key, Entry entry) -> key.length() * 2 + weight(entry.reply.body))
+			.removalListener(removal -> {
+				if (removal.wasEvicted()) {
+					evictions.increment();
+				}
+			})
+			.build();
+	}
+
+	// Guava weighs an entry only when it is stored, before it is compressed, so room for the gzipped copy is set aside up front;
+	// JSON bodies compress to well under a quarter
+	private static int weight(byte[] body) {
+		return body.length + body.length / 4;
+	}
+
+	static String key(String route, String query) {
+		if (query == null) {
+			return route;
+		}
+		// Matching is case-insensitive, but folding a regex could turn \w into \W, so only literals are folded
+		return route + "?q=" + (TitleIndex.isLiteral(query) ? TitleIndex.fold(query) : query);
+	}
+
+	Reply get(String key, Object generation, Supplier<Reply> compute) {
+		var entry = results.getIfPresent(key);
+		if (entry != null && entry.generation == generation) {
+			hits.increment();
+			return entry.reply;
+		}
+		if (entry != null) {
+			invalidations.increment();
+		}
+		misses.increment();
+		var reply = compute.get();
+		if (reply.body.length <= maxEntryBytes) {
+			results.put(key, new Entry(generation, reply));
+		} else if (entry != null) {
+			results.invalidate(key);
+		}
+		return reply;
+	}
+
+	long hits() { return hits.sum(); }
+	long misses() { return misses.sum(); }
+	long evictions() { return evictions.sum(); }
+	long invalidations() { return invalidations.sum(); }
+	long size() { return results.size(); }
+}
@@ -0,0 +1,78 @@
+package movies;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counters and latency histograms per registered route, rendered in the Prometheus text format.
+ * The set of routes is fixed once the server starts, so memory stays bounded however many requests come in;
+ * paths that match no registered route share the "other" entry.
+ */
+final class RouteMetrics {
+	private static final String OTHER = "other";
+	private static final double[] BUCKET_SECONDS = { 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	private final Map<String, RouteStats> routes = new LinkedHashMap<>();
+	private final RouteStats other = new RouteStats();
+
+	RouteMetrics() {
+		routes.put(OTHER, other);
+	}
+
+	/** Must be called before the server starts taking requests. */
+	void register(String route) {
+		routes.putIfAbsent(route, new RouteStats());
+	}
+
+	/** Records a request to {@code path} that took {@code elapsedNanos}. */
+	void record(String path, int status, long elapsedNanos) {
+		var stats = routes.getOrDefault(path, other);
+		stats.byStatusClass[Math.min(Math.max(status / 100, 1), 5) - 1].increment();
+		stats.latency.recordNanos(elapsedNanos);
+	}
+
+	void writePrometheus(StringBuilder out) {
+		out.append("# HELP movies_http_requests_total Requests handled, by route and status class.\n");
+		out.append("# TYPE movies_http_requests_total counter\n");
+		routes.forEach((route, stats) -> {
+			for (int statusClass = 0; statusClass < stats.byStatusClass.length; statusClass++) {
+				var count = stats.byStatusClass[statusClass].sum();
+				if (count > 0) {
+					out.append("movies_http_requests_total{route=\"").append(route).append("\",status=\"").append(statusClass + 1).append("xx\"} ")
+						.append(count).append('\n');
+				}
+			}
+		});
+
+		var snapshots = new LinkedHashMap<String, LatencyHistogram.Snapshot>();
+		routes.forEach((route, stats) -> snapshots.put(route, stats.latency.snapshot()));
+
+		out.append("# HELP movies_http_request_duration_seconds Request latency, by route.\n");
+		out.append("# TYPE movies_http_request_duration_seconds histogram\n");
+		snapshots.forEach((route, latency) -> {
+			for (var le : BUCKET_SECONDS) {
+				out.append("movies_http_request_duration_seconds_bucket{route=\"").append(route).append("\",le=\"").append(le).append("\"} ")
+					.append(latency.countAtMost((long) (le * 1_000_000))).append('\n');
+			}
+			out.append("movies_http_request_duration_seconds_bucket{route=\"").append(route).append("\",le=\"+Inf\"} ").append(latency.count()).append('\n');
+			out.append("movies_http_request_duration_seconds_sum{route=\"").append(route).append("\"} ").append(latency.sumMicros() / 1e6).append('\n');
+			out.append("movies_http_request_duration_seconds_count{route=\"").append(route).append("\"} ").append(latency.count()).append('\n');
+		});
+
+		out.append("# HELP movies_http_request_duration_quantile_seconds Latency quantiles from the full-resolution histogram, by route.\n");
+		out.append("# TYPE movies_http_request_duration_quantile_seconds gauge\n");
+		snapshots.forEach((route, latency) -> {
+			for (var quantile : QUANTILES) {
+				out.append("movies_http_request_duration_quantile_seconds{route=\"").append(route).append("\",quantile=\"").append(quantile).append("\"} ")
+					.append(latency.quantileMicros(quantile) / 1e6).append('\n');
+			}
+		});
+	}
+
+	private static final class RouteStats {
+		final LongAdder[] byStatusClass = { new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder() };
+		final LatencyHistogram latency = new LatencyHistogram();
+	}
+}
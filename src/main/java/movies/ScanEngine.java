@@ -0,0 +1,164 @@
+package movies;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Filter and aggregate over ordinals {@code 0..size}, split into chunks that run on a dedicated fork/join pool.
+ * The pool has its own, fixed number of threads, so however heavy a query is it cannot take more cores than that,
+ * and request threads only wait for it. Scans whose estimated cost is below the threshold run on the calling thread,
+ * where forking would cost more than it saves.
+ */
+final class ScanEngine {
+	// Rough per-item costs, in units of a substring test on a short title
+	static final long SUBSTRING_COST = 1;
+	static final long AGGREGATE_COST = 4;
+	static final long REGEX_COST = 16;
+	// Small enough to balance well, large enough that a chunk's ordinals and titles stay warm in cache while it runs
+	private static final int CHUNK = 4096;
+	/** Runs everything on the calling thread, for callers outside the server such as benchmarks. */
+	static final ScanEngine SEQUENTIAL = new ScanEngine(null, Long.MAX_VALUE);
+
+	private final ForkJoinPool pool;
+	private final long parallelThreshold;
+	private final LongAdder sequentialScans = new LongAdder();
+	private final LongAdder parallelScans = new LongAdder();
+
+	ScanEngine(int threads, long parallelThreshold) {
+		this(new ForkJoinPool(threads, pool -> {
+			var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("scan-" + thread.getPoolIndex());
+			thread.setDaemon(true);
+			return thread;
+		}, null, false), parallelThreshold);
+	}
+
+	private ScanEngine(ForkJoinPool pool, long parallelThreshold) {
+		this.pool = pool;
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	/**
+	 * Ascending ordinals for which the predicate holds. Every chunk gets its own predicate from {@code perChunk},
+	 * so predicates may keep state such as a Matcher.
+	 */
+	int[] filter(int size, long unitCost, Supplier<IntPredicate> perChunk) {
+		if (!parallel(size, unitCost)) {
+			return new Filter(0, size, perChunk).scan();
+		}
+		return pool.invoke(new Filter(0, size, perChunk));
+	}
+
+	/** Sums of {@code width} counters that {@code accumulate} adds ordinals into, each chunk with its own counters. */
+	long[] sum(int size, int width, long unitCost, ObjIntConsumer<long[]> accumulate) {
+		if (!parallel(size, unitCost)) {
+			return new Sum(0, size, width, accumulate).scan();
+		}
+		return pool.invoke(new Sum(0, size, width, accumulate));
+	}
+
+	/** How many threads a scan of this size and cost will run on, so per-scan budgets can be set in scan-thread time. */
+	int threads(int size, long unitCost) {
+		return splits(size, unitCost) ? pool.getParallelism() : 1;
+	}
+
+	private boolean parallel(int size, long unitCost) {
+		var parallel = splits(size, unitCost);
+		(parallel ? parallelScans : sequentialScans).increment();
+		return parallel;
+	}
+
+	private boolean splits(int size, long unitCost) {
+		// already on a scan thread: the caller is a chunk itself
+		return size > CHUNK && size * unitCost >= parallelThreshold && !(Thread.currentThread() instanceof ForkJoinWorkerThread);
+	}
+
+	long sequentialScans() { return sequentialScans.sum(); }
+	long parallelScans() { return parallelScans.sum(); }
+
+	private static final class Filter extends RecursiveTask<int[]> {
+		private final int from;
+		private final int to;
+		private final Supplier<IntPredicate> perChunk;
+
+		Filter(int from, int to, Supplier<IntPredicate> perChunk) {
+			this.from = from;
+			this.to = to;
+			this.perChunk = perChunk;
+		}
+
+		@Override
+		protected int[] compute() {
+			if (to - from > CHUNK) {
+				var middle = (from + to) >>> 1;
+				var left = new Filter(from, middle, perChunk);
+				left.fork();
+				var right = new Filter(middle, to, perChunk).compute();
+				var leftResult = left.join();
+				var merged = Arrays.copyOf(leftResult, leftResult.length + right.length);
+				System.arraycopy(right, 0, merged, leftResult.length, right.length);
+				return merged;
+			}
+			return scan();
+		}
+
+		int[] scan() {
+			var matches = perChunk.get();
+			var result = new int[Math.min(to - from, 16)];
+			var count = 0;
+			for (int ordinal = from; ordinal < to; ordinal++) {
+				if (matches.test(ordinal)) {
+					if (count == result.length) {
+						result = Arrays.copyOf(result, Math.min(count * 2, to - from));
+					}
+					result[count++] = ordinal;
+				}
+			}
+			return count == result.length ? result : Arrays.copyOf(result, count);
+		}
+	}
+
+	private static final class Sum extends RecursiveTask<long[]> {
+		private final int from;
+		private final int to;
+		private final int width;
+		private final ObjIntConsumer<long[]> accumulate;
+
+		Sum(int from, int to, int width, ObjIntConsumer<long[]> accumulate) {
+			this.from = from;
+			this.to = to;
+			this.width = width;
+			this.accumulate = accumulate;
+		}
+
+		@Override
+		protected long[] compute() {
+			if (to - from > CHUNK) {
+				var middle = (from + to) >>> 1;
+				var left = new Sum(from, middle, width, accumulate);
+				left.fork();
+				var sums = new Sum(middle, to, width, accumulate).compute();
+				var leftSums = left.join();
+				for (int i = 0; i < width; i++) {
+					sums[i] += leftSums[i];
+				}
+				return sums;
+			}
+			return scan();
+		}
+
+		long[] scan() {
+			var sums = new long[width];
+			for (int ordinal = from; ordinal < to; ordinal++) {
+				accumulate.accept(sums, ordinal);
+			}
+			return sums;
+		}
+	}
+}
@@ -1,174 +1,670 @@
 package movies;
 
+import static spark.Spark.afterAfter;
+import static spark.Spark.before;
 import static spark.Spark.exception;
 import static spark.Spark.get;
+import static spark.Spark.halt;
 import static spark.Spark.ipAddress;
 import static spark.Spark.port;
+import static spark.Spark.post;
+import static spark.Spark.threadPool;
 
+import java.io.ByteArrayOutputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
 import java.util.zip.GZIPInputStream;
 
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
 import com.google.common.base.Supplier;
-import com.google.common.base.Suppliers;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import com.mongodb.client.MongoClients;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
 import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import spark.Request;
 import spark.Response;
+import spark.Route;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
 
 public class Server {
-	private static HashMap<Request, Integer> REQUEST_METRICS = new HashMap<Request, Integer>();
-	private static final Gson GSON = new GsonBuilder().setLenient().setPrettyPrinting().create();
+	private static final RouteMetrics METRICS = new RouteMetrics();
+	private static final AdmissionControl ADMISSION = new AdmissionControl(
+		Integer.parseInt(System.getenv().getOrDefault("ADMISSION_MAX_LIMIT", "200")),
+		Integer.parseInt(System.getenv().getOrDefault("ADMISSION_QUEUE", "50")),
+		Long.parseLong(System.getenv().getOrDefault("ADMISSION_MAX_WAIT_MS", "100")),
+		admissionMaxTotal());
+	private static final Gson GSON = new GsonBuilder().setLenient().setPrettyPrinting().registerTypeAdapter(Credit.class, new Credit.JsonAdapter()).create();
 	private static final Logger LOG = LoggerFactory.getLogger(Server.class);
 	private static final String MONGO_URI = System.getenv("MONGO_URI");
 
-	private static final Supplier<List<Movie>> MOVIES = cache(Server::loadMovies);
-	private static final Supplier<List<Credit>> CREDITS = cache(Server::loadCredits);
-	private static final Supplier<List<MovieWithCredits>> MOVIES_WITH_CREDITS = cache(() -> 
-		MOVIES.get().stream()
-			.map(movie -> new MovieWithCredits(movie, creditsForMovie(movie)))
-			.toList()
-	);
+	private static final CreditDictionary.Storage CREDIT_STORAGE = creditStorage();
+	private static final DatasetLoader LOADER = new DatasetLoader(Server::loadMovies, Server::loadCredits, Server::creditsFingerprint, snapshot());
+	private static final AtomicReference<Dataset> DATA = new AtomicReference<>();
+	private static volatile Throwable loadFailure;
+	private static final DatasetRefresher REFRESHER = new DatasetRefresher(LOADER, DATA, Server::creditsFingerprint,
+		Duration.ofSeconds(Long.parseLong(System.getenv().getOrDefault("DATASET_REFRESH_SECONDS", "60"))));
 	private static final int MOVIES_API_PORT = Integer.parseInt(System.getenv("MOVIES_API_PORT"));
-	private static final Supplier<Map<String, List<Credit>>> CREDITS_BY_MOVIE_ID = cache(() -> CREDITS.get().stream().collect(Collectors.groupingBy(c -> c.id)));
+	private static final long FRAGMENT_CACHE_BYTES = Long.parseLong(System.getenv().getOrDefault("FRAGMENT_CACHE_MB", "128")) << 20;
+	private static final long RESULT_CACHE_BYTES = Long.parseLong(System.getenv().getOrDefault("RESULT_CACHE_MB", "64")) << 20;
+	private static final ResultCache RESULTS = new ResultCache(RESULT_CACHE_BYTES);
+	// Off-heap credits are decoded straight into every response: caching their JSON would put them back on the heap
+	private static final FragmentCache FRAGMENTS = new FragmentCache(GSON, FRAGMENT_CACHE_BYTES,
+		CREDIT_STORAGE == CreditDictionary.Storage.OFF_HEAP ? Set.of(Movie.class) : Set.of(Movie.class, Credit.class));
+	private static final int PAGE_SIZE = Integer.parseInt(System.getenv().getOrDefault("PAGE_SIZE", "100"));
+	private static final int MAX_PAGE_SIZE = Integer.parseInt(System.getenv().getOrDefault("MAX_PAGE_SIZE", "1000"));
+	private static final int COMPRESSION_MIN_BYTES = Integer.parseInt(System.getenv().getOrDefault("COMPRESSION_MIN_BYTES", "1024"));
+	private static final Set<String> VERSIONED_ROUTES = Set.of("/movies", "/old-movies", "/credits", "/stats");
+	private static final String DATASET = "dataset";
+	private static final String ETAG = "etag";
+	private static final String STARTED_AT = "startedAt";
+	private static final String ADMITTED_AT = "admittedAt";
+	private static final String REQUEST_EVENT = "requestEvent";
+	private static final int MAX_RECORDING_SECONDS = 300;
+	private static final AtomicBoolean RECORDING = new AtomicBoolean();
+	private static final String NEXT_CURSOR = "X-Next-Cursor";
+	private static final String CURSOR_PREFIX = "after:";
+	private static final SingleFlight<String, ResultCache.Reply> IN_FLIGHT = new SingleFlight<>();
+	// Separate from Jetty's threads, so a heavy query can slow down other queries but never stop the server from answering
+	private static final ScanEngine SCANS = new ScanEngine(
+		Integer.parseInt(System.getenv().getOrDefault("SCAN_THREADS", Integer.toString(Math.max(1, Runtime.getRuntime().availableProcessors() / 2)))),
+		Long.parseLong(System.getenv().getOrDefault("SCAN_PARALLEL_THRESHOLD", "65536")));
+	private static final QueryPlanner QUERIES = new QueryPlanner(Long.parseLong(System.getenv().getOrDefault("PATTERN_CACHE_SIZE", "256")), SCANS,
+		Duration.ofMillis(Long.parseLong(System.getenv().getOrDefault("REGEX_BUDGET_MS", "250"))));
 
 	public static void main(String[] args) {
 		port(MOVIES_API_PORT);
 		ipAddress("0.0.0.0");
-		get("/", Server::randomMovieEndpoint);
-		get("/credits", Server::creditsEndpoint);
-		get("/movies", Server::moviesEndpoint);
-		get("/old-movies", Server::oldMoviesEndpoint);
-		get("/stats", Server::statsEndpoint);
-		exception(Exception.class, (exception, request, response) -> exception.printStackTrace());
-
-		// Warm these up at application start
-		MOVIES.get();
-		CREDITS.get();
+		configureThreads();
+		// Kept on the request, a ThreadLocal would cost a map entry and an array per request on virtual threads
+		before((req, res) -> req.attribute(STARTED_AT, System.nanoTime()));
+		before(Server::beginRequestEvent);
+		before(Server::notModifiedFilter);
+		before(Server::admissionFilter);
+		before("/admin/*", Server::localOnlyFilter);
+		route("/health/live", Server::liveEndpoint);
+		route("/health/ready", Server::readyEndpoint);
+		limitedRoute("/", Server::randomMovieEndpoint);
+		limitedRoute("/credits", Server::creditsEndpoint);
+		limitedRoute("/movies", Server::moviesEndpoint);
+		limitedRoute("/old-movies", Server::oldMoviesEndpoint);
+		limitedRoute("/stats", Server::statsEndpoint);
+		route("/debug/caches", Server::cachesEndpoint);
+		route("/metrics", Server::metricsEndpoint);
+		METRICS.register("/admin/refresh");
+		post("/admin/refresh", Server::refreshEndpoint);
+		METRICS.register("/admin/recording");
+		post("/admin/recording", Server::recordingEndpoint);
+		afterAfter(Server::admissionRelease);
+		afterAfter(Server::commitRequestEvent);
+		afterAfter(Server::recordMetrics);
+		exception(PatternSyntaxException.class, (exception, request, response) -> {
+			response.status(400);
+			response.type("application/json");
+			response.body("{\"error\":\"invalid query\"}");
+		});
+		exception(BudgetedCharSequence.BudgetExceededException.class, (exception, request, response) -> {
+			response.status(422);
+			response.type("application/json");
+			response.body("{\"error\":\"query too expensive\"}");
+		});
+		// Spark answers a 404 when an exception handler leaves the body unset, so the body is what keeps this a 500
+		exception(Exception.class, (exception, request, response) -> {
+			LOG.error("Failed to handle " + request.requestMethod() + " " + request.pathInfo(), exception);
+			response.status(500);
+			response.type("application/json");
+			response.body("{\"error\":\"internal error\"}");
+		});
+
+		// Routes are up already so /health/live answers, data endpoints reply 503 until this completes
+		try {
+			DATA.set(LOADER.load(true).join());
+		} catch (CompletionException e) {
+			loadFailure = e.getCause();
+			LOG.error("Failed to load the dataset", e.getCause());
+			return;
+		}
+		REFRESHER.start();
 
 		var version = System.getProperty("dd.version");
 		LOG.info("Running version " + (version != null ? version.toLowerCase() : "(not set)") + " with pid " + ProcessHandle.current().pid());
 	}
 
-	private static void collectMetrics(Request req) {
-		var count = REQUEST_METRICS.get(req);
-		if (count == null) {
-			count = 1;
-		} else {
-			count++;
+	// MOVIES_API_EXECUTION=platform runs requests on Jetty's bounded pool of MOVIES_API_THREADS workers,
+	// MOVIES_API_EXECUTION=virtual runs each request on its own virtual thread
+	private static void configureThreads() {
+		var mode = System.getenv().getOrDefault("MOVIES_API_EXECUTION", "platform");
+		var threads = Integer.parseInt(System.getenv().getOrDefault("MOVIES_API_THREADS", "200"));
+		switch (mode) {
+			case "platform" -> threadPool(threads);
+			case "virtual" -> EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY, new EmbeddedJettyFactory().withThreadPool(new VirtualThreadPool()));
+			default -> throw new IllegalArgumentException("MOVIES_API_EXECUTION must be platform or virtual, not " + mode);
+		}
+		LOG.info("Handling requests on " + (mode.equals("virtual") ? "virtual threads" : "up to " + threads + " platform threads"));
+	}
+
+	// ADMISSION_MAX_TOTAL caps the threads all limited routes hold together, by default three quarters of
+	// MOVIES_API_THREADS so health checks never wait behind them; virtual threads are not scarce, so there it is unbounded
+	private static int admissionMaxTotal() {
+		var configured = System.getenv("ADMISSION_MAX_TOTAL");
+		if (configured != null) {
+			return Integer.parseInt(configured);
 		}
-		REQUEST_METRICS.put(req, count);
+		if (System.getenv().getOrDefault("MOVIES_API_EXECUTION", "platform").equals("virtual")) {
+			return Integer.MAX_VALUE;
+		}
+		return Math.max(1, Integer.parseInt(System.getenv().getOrDefault("MOVIES_API_THREADS", "200")) * 3 / 4);
 	}
 
-	private static Object randomMovieEndpoint(Request req, Response res) {
-		collectMetrics(req);
-		return replyJSON(res, MOVIES.get().get(new Random().nextInt(MOVIES.get().size())));
+	private static void route(String path, Route route) {
+		METRICS.register(path);
+		get(path, route);
 	}
 
-	private static Object creditsEndpoint(Request req, Response res) {
-		var query = req.queryParamOrDefault("q", req.queryParams("query"));
-		var moviesWithCredits = MOVIES_WITH_CREDITS.get();
+	// Health, metrics and admin routes stay unlimited, so an overloaded server still answers its healthchecks
+	private static void limitedRoute(String path, Route route) {
+		ADMISSION.register(path);
+		route(path, route);
+	}
+
+	/** Holds back or turns away requests to a limited route that is at its concurrency limit. */
+	private static void admissionFilter(Request req, Response res) throws InterruptedException {
+		var limiter = ADMISSION.limiter(req.pathInfo());
+		if (limiter == null) {
+			return;
+		}
+		if (!limiter.acquire()) {
+			res.header("Retry-After", "1");
+			throw halt(503, "{\"status\":\"overloaded\"}");
+		}
+		req.attribute(ADMITTED_AT, System.nanoTime());
+	}
+
+	// Admin routes reload the dataset or record the whole JVM, so they are for whoever is on the host, not for API clients
+	private static void localOnlyFilter(Request req, Response res) throws UnknownHostException {
+		if (!InetAddress.getByName(req.ip()).isLoopbackAddress()) {
+			throw halt(403, "{\"error\":\"admin routes only answer on localhost\"}");
+		}
+	}
 
-		if (query != null) {
-			var p = Pattern.compile(query, Pattern.CASE_INSENSITIVE);
-			moviesWithCredits = moviesWithCredits.stream()
-				.filter(m -> m.movie().title != null && p.matcher(m.movie().title).find())
-				.toList();
+	private static void recordMetrics(Request req, Response res) {
+		Long startedAt = req.attribute(STARTED_AT);
+		if (startedAt != null) {
+			METRICS.record(req.pathInfo(), res.status(), System.nanoTime() - startedAt);
 		}
+	}
 
-		return replyJSON(res, moviesWithCredits);
+	private static void admissionRelease(Request req, Response res) {
+		Long admittedAt = req.attribute(ADMITTED_AT);
+		if (admittedAt != null) {
+			ADMISSION.limiter(req.pathInfo()).release(System.nanoTime() - admittedAt, res.status() >= 500);
+		}
 	}
 
-	private static synchronized Object statsEndpoint(Request req, Response res) {
-		var movies = MOVIES.get().stream();
+	/** Starts the JFR event of the request, unless no recording is listening for it. */
+	private static void beginRequestEvent(Request req, Response res) {
+		var event = new RequestEvent();
+		if (!event.isEnabled()) {
+			return;
+		}
+		event.begin();
+		event.route = req.pathInfo();
 		var query = req.queryParamOrDefault("q", req.queryParams("query"));
+		event.query = query == null || !TitleIndex.isLiteral(query) ? query : TitleIndex.fold(query);
+		req.attribute(REQUEST_EVENT, event);
+	}
 
-		if (query != null) {
-			var p = Pattern.compile(query, Pattern.CASE_INSENSITIVE);
-			movies = movies.filter(m -> m.title != null && p.matcher(m.title).find());
+	private static void commitRequestEvent(Request req, Response res) {
+		RequestEvent event = req.attribute(REQUEST_EVENT);
+		if (event == null) {
+			return;
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.status = res.status();
+			event.commit();
 		}
+	}
 
-		var selectedMovies = movies.toList();
+	private static void matched(Request req, int count) {
+		RequestEvent event = req.attribute(REQUEST_EVENT);
+		if (event != null) {
+			event.matched = count;
+		}
+	}
 
-		var numberMatched = selectedMovies.size();
-		var statsForMovies = selectedMovies.stream().map(movie -> crewCountForMovie(creditsForMovie(movie)));
-		var aggregatedStats =
-			statsForMovies
-				.flatMap(countMap -> countMap.entrySet().stream())
-				.collect(Collectors.groupingBy(Map.Entry::getKey, Collectors.summingLong(Map.Entry::getValue)));
+	private static void serialized(Request req, long bytes, long nanos, boolean computed) {
+		RequestEvent event = req.attribute(REQUEST_EVENT);
+		if (event != null) {
+			event.resultBytes = bytes;
+			event.serializationNanos += nanos;
+			event.computed |= computed;
+		}
+	}
 
-		return replyJSON(res, new StatsResult(numberMatched, aggregatedStats));
+	/**
+	 * Answers 304 for the routes whose reply only depends on the dataset and the query, when the client already has it,
+	 * and otherwise sets the ETag and pins the dataset it was computed from for the route.
+	 */
+	private static void notModifiedFilter(Request req, Response res) {
+		var data = DATA.get();
+		if (data == null || !VERSIONED_ROUTES.contains(req.pathInfo())) {
+			return;
+		}
+		var etag = ETags.of(data.version(), req, CompressingOutputStream.acceptsGzip(req.headers("Accept-Encoding")));
+		req.attribute(DATASET, data);
+		// the reply helpers set it, so a 400, 422 or 503 does not carry the tag of the 200
+		req.attribute(ETAG, etag);
+		if (ETags.matches(req.headers("If-None-Match"), etag)) {
+			res.header("ETag", etag);
+			res.header("Vary", "Accept-Encoding");
+			throw halt(304);
+		}
 	}
 
-	private static List<Credit> creditsForMovie(Movie movie) {
-		return CREDITS_BY_MOVIE_ID.get().get(movie.id);
+	/**
+	 * The loaded dataset; replies 503 while it is still loading. Read it once per request so the request sees one consistent view,
+	 * the same one its ETag was computed from.
+	 */
+	private static Dataset dataset(Request req, Response res) {
+		Dataset pinned = req.attribute(DATASET);
+		if (pinned != null) {
+			return pinned;
+		}
+		var data = DATA.get();
+		if (data == null) {
+			res.header("Retry-After", "5");
+			throw halt(503, "{\"status\":\"" + (loadFailure == null ? "loading" : "failed") + "\"}");
+		}
+		return data;
 	}
 
-	private static Map<CrewRole, Long> crewCountForMovie(List<Credit> credits) {
-		var credit = credits != null ? credits.get(0) : null;
-		return credit != null ?
-			credit.crewRole.stream().collect(Collectors.groupingBy(CrewRole::parseRole, Collectors.counting())) : Map.of();
+	private static Object liveEndpoint(Request req, Response res) throws IOException {
+		return replyJSON(req, res, Map.of("status", "live"));
 	}
 
-	private static Object moviesEndpoint(Request req, Response res) {
-		var movies = MOVIES.get();
-		movies = sortByDescReleaseDate(movies);
+	private static Object readyEndpoint(Request req, Response res) throws IOException {
+		var status = DATA.get() != null ? "ready" : loadFailure == null ? "loading" : "failed";
+		if (DATA.get() == null) {
+			res.status(503);
+		}
+		return replyJSON(req, res, Map.of("status", status, "phaseMillis", LOADER.phaseMillis()));
+	}
+
+	// Re-reads movies-v2.json.gz and mongo; the reply does not wait for the new dataset
+	private static Object refreshEndpoint(Request req, Response res) throws IOException {
+		REFRESHER.refresh();
+		res.status(202);
+		return replyJSON(req, res, Map.of("status", "refreshing"));
+	}
+
+	/**
+	 * Runs a flight recording with the JDK's "profile" settings for {@code seconds} (default 30, at most 300) and replies with it,
+	 * ready for JDK Mission Control or {@code jfr print --events movies.Request}. One recording at a time, each holds a thread.
+	 * The environment and system properties are left out: they hold MONGO_URI and the agent's settings.
+	 */
+	private static Object recordingEndpoint(Request req, Response res) throws Exception {
+		int seconds;
+		try {
+			seconds = Integer.parseInt(req.queryParamOrDefault("seconds", "30"));
+		} catch (NumberFormatException e) {
+			seconds = -1;
+		}
+		if (seconds <= 0 || seconds > MAX_RECORDING_SECONDS) {
+			throw halt(400, "{\"error\":\"seconds must be between 1 and " + MAX_RECORDING_SECONDS + "\"}");
+		}
+		if (!RECORDING.compareAndSet(false, true)) {
+			throw halt(409, "{\"error\":\"a recording is already running\"}");
+		}
+		try {
+			var file = Files.createTempFile("movies-api-", ".jfr");
+			try (var recording = new Recording(Configuration.getConfiguration("profile"))) {
+				recording.setName("movies-api");
+				recording.disable("jdk.InitialEnvironmentVariable");
+				recording.disable("jdk.InitialSystemProperty");
+				recording.start();
+				Thread.sleep(Duration.ofSeconds(seconds));
+				recording.stop();
+				recording.dump(file);
+				res.type("application/octet-stream");
+				res.header("Content-Disposition", "attachment; filename=\"movies-api.jfr\"");
+				res.raw().setContentLengthLong(Files.size(file));
+				var out = res.raw().getOutputStream();
+				Files.copy(file, out);
+				out.flush();
+			} finally {
+				Files.deleteIfExists(file);
+			}
+		} finally {
+			RECORDING.set(false);
+		}
+		return "";
+	}
+
+	private static Object randomMovieEndpoint(Request req, Response res) throws IOException {
+		var movies = dataset(req, res).movies();
+		matched(req, 1);
+		return replyJSON(req, res, movies.get(new Random().nextInt(movies.size())));
+	}
+
+	private static Object creditsEndpoint(Request req, Response res) throws IOException {
+		var data = dataset(req, res);
 		var query = req.queryParamOrDefault("q", req.queryParams("query"));
-		if (query != null) {
-			movies = movies.stream().filter(m -> m.title.toUpperCase().matches(".*" + query.toUpperCase() + ".*")).toList();
+		var limit = limit(req);
+		var after = cursor(req);
+		var key = ResultCache.key("/credits", query) + "&limit=" + limit + "&after=" + after;
+		return replyCachedJSON(req, res, key, data, () -> credits(req, data, query, limit, after));
+	}
+
+	// Alphabetical by title, so pages stay put while the same dataset is live
+	// Movies are joined with their credits while the reply is written, nothing per movie is built up front
+	private static Page<MovieWithCredits> credits(Request req, Dataset data, String query, int limit, int after) {
+		var byTitle = data.titleIndex().byTitle();
+		var selected = query == null ? null : QUERIES.select(data.titleIndex(), query);
+		matched(req, selected == null ? byTitle.size() : selected.length);
+		var ordinals = selected == null ? byTitle.page(after, limit) : byTitle.page(selected, after, limit);
+		return Page.of(new MovieCreditsView(data.movies(), data.creditJoin(), ordinals), ordinals, byTitle, limit);
+	}
+
+	private static Object statsEndpoint(Request req, Response res) throws IOException {
+		var data = dataset(req, res);
+		var query = req.queryParamOrDefault("q", req.queryParams("query"));
+		return replyCachedJSON(req, res, ResultCache.key("/stats", query), data, () -> stats(req, data, query));
+	}
+
+	private static StatsResult stats(Request req, Dataset data, String query) {
+		var selected = query != null ? QUERIES.select(data.titleIndex(), query) : null;
+		var size = selected != null ? selected.length : data.movies().size();
+		matched(req, size);
+
+		// Role counts are precomputed per credit, so aggregating is an array sum per chunk and needs no lock
+		var crewCount = SCANS.sum(size, CrewRole.VALUES.length, ScanEngine.AGGREGATE_COST, (counts, i) -> {
+			var credit = data.creditFor(selected != null ? selected[i] : i);
+			if (credit != null) {
+				credit.addRoleCounts(counts);
+			}
+		});
+
+		return StatsResult.of(size, crewCount);
+	}
+
+	private static Object cachesEndpoint(Request req, Response res) throws IOException {
+		var fragments = FRAGMENTS.stats();
+		var patterns = QUERIES.stats();
+		return replyJSON(req, res, Map.of(
+			"fragments", Map.of("entries", FRAGMENTS.size(), "hits", fragments.hitCount(), "misses", fragments.missCount(), "evictions", fragments.evictionCount()),
+			"results", Map.of("entries", RESULTS.size(), "hits", RESULTS.hits(), "misses", RESULTS.misses(), "evictions", RESULTS.evictions(), "invalidations", RESULTS.invalidations()),
+			"scans", Map.of("sequential", SCANS.sequentialScans(), "parallel", SCANS.parallelScans()),
+			"inFlight", Map.of("executed", IN_FLIGHT.executed(), "coalesced", IN_FLIGHT.coalesced()),
+			"patterns", Map.of("entries", QUERIES.size(), "hits", patterns.hitCount(), "misses", patterns.missCount(), "evictions", patterns.evictionCount())
+		));
+	}
+
+	private static Object moviesEndpoint(Request req, Response res) throws IOException {
+		var data = dataset(req, res);
+		var newestFirst = data.releaseDates().ranking();
+		var query = req.queryParamOrDefault("q", req.queryParams("query"));
+		var limit = limit(req);
+		var after = cursor(req);
+		var selected = query == null ? null : QUERIES.select(data.titleIndex(), query);
+		matched(req, selected == null ? newestFirst.size() : selected.length);
+		var ordinals = selected == null ? newestFirst.page(after, limit) : newestFirst.page(selected, after, limit);
+		return replyPage(req, res, Page.of(TitleIndex.select(ordinals, data.movies()), ordinals, newestFirst, limit));
+	}
+
+	private static int limit(Request req) {
+		try {
+			var limit = Integer.parseInt(req.queryParamOrDefault("limit", Integer.toString(PAGE_SIZE)));
+			if (limit > 0) {
+				return Math.min(limit, MAX_PAGE_SIZE);
+			}
+		} catch (NumberFormatException e) {
+			// falls through to the 400
 		}
-		return replyJSON(res, movies);
+		throw halt(400, "{\"error\":\"limit must be a positive number\"}");
 	}
 
-	private static List<Movie> sortByDescReleaseDate(List<Movie> movies) {
-		var sortedMovies = new ArrayList<Movie>(movies);
-		sortedMovies.sort(Comparator.comparing((Movie m) -> m.releaseDate).reversed());
-		return sortedMovies;
+	/** The rank after which the requested page starts, -1 for the first page. */
+	private static int cursor(Request req) {
+		var cursor = req.queryParams("cursor");
+		if (cursor == null || cursor.isEmpty()) {
+			return -1;
+		}
+		try {
+			var decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+			if (decoded.startsWith(CURSOR_PREFIX)) {
+				return Math.max(Integer.parseInt(decoded.substring(CURSOR_PREFIX.length())), -1);
+			}
+		} catch (IllegalArgumentException e) {
+			// not base64 or not a number, falls through to the 400
+		}
+		throw halt(400, "{\"error\":\"invalid cursor\"}");
+	}
+
+	private static void etag(Request req, Response res) {
+		String etag = req.attribute(ETAG);
+		if (etag != null) {
+			res.header("ETag", etag);
+		}
+	}
+
+	private static Object replyPage(Request req, Response res, Page<?> page) throws IOException {
+		if (page.nextCursor() != null) {
+			res.header(NEXT_CURSOR, page.nextCursor());
+		}
+		return replyJSON(req, res, page.items());
 	}
 
-	private static Object oldMoviesEndpoint(Request req, Response res) {
+	private static Object oldMoviesEndpoint(Request req, Response res) throws IOException {
 		var year = req.queryParamOrDefault("year", "2010");
-		var limit = Integer.valueOf(req.queryParamOrDefault("n", "10"));
+		var limit = oldMoviesCount(req);
 
-		var oldMovies = MOVIES.get().stream().filter(m -> isOlderThan(year, m)).toList();
-		LOG.atDebug().log(() -> "Found the following oldMovies: " + oldMovies);
-		var limitedMovies = oldMovies.stream().limit(limit).toList();
-		LOG.atDebug().log(() -> "With limit " + limit + ", the result was: " + limitedMovies);
+		var limitedMovies = dataset(req, res).releaseDates().releasedBefore(cutoff(year), limit);
+		LOG.atDebug().log(() -> "With limit " + limit + ", the movies older than " + year + " were: " + limitedMovies);
+		matched(req, limitedMovies.size());
 
-		return replyJSON(res, limitedMovies);
+		return replyJSON(req, res, limitedMovies);
 	}
 
-	private static boolean isOlderThan(String year, Movie movie) {
-		var result = movie.releaseDate.compareTo(year) < 0;
-		LOG.atDebug().log(() -> "Is " + movie + " older than " + year + "? " + result);
-		return result;
+	private static int oldMoviesCount(Request req) {
+		try {
+			var count = Integer.parseInt(req.queryParamOrDefault("n", "10"));
+			if (count >= 0) {
+				return count;
+			}
+		} catch (NumberFormatException e) {
+			// falls through to the 400
+		}
+		throw halt(400, "{\"error\":\"n must be a number of movies\"}");
+	}
+
+	private static int cutoff(String year) {
+		try {
+			return ReleaseDateIndex.cutoff(year);
+		} catch (DateTimeException | NumberFormatException e) {
+			// falls through to the 400
+		}
+		throw halt(400, "{\"error\":\"year must be a year, a year and month or an ISO date\"}");
 	}
 
-	private static Object replyJSON(Response res, Stream<?> data) { return replyJSON(res, data.toList()); }
-	private static Object replyJSON(Response res, Object data) {
+	private static Object metricsEndpoint(Request req, Response res) {
+		var out = new StringBuilder();
+		METRICS.writePrometheus(out);
+		ADMISSION.writePrometheus(out);
+		var fragments = FRAGMENTS.stats();
+		counter(out, "movies_fragment_cache_hits_total", fragments.hitCount());
+		counter(out, "movies_fragment_cache_misses_total", fragments.missCount());
+		counter(out, "movies_fragment_cache_evictions_total", fragments.evictionCount());
+		counter(out, "movies_result_cache_hits_total", RESULTS.hits());
+		counter(out, "movies_result_cache_misses_total", RESULTS.misses());
+		counter(out, "movies_result_cache_evictions_total", RESULTS.evictions());
+		counter(out, "movies_result_cache_invalidations_total", RESULTS.invalidations());
+		counter(out, "movies_requests_executed_total", IN_FLIGHT.executed());
+		counter(out, "movies_scans_sequential_total", SCANS.sequentialScans());
+		counter(out, "movies_scans_parallel_total", SCANS.parallelScans());
+		counter(out, "movies_queries_over_budget_total", QUERIES.overBudget());
+		counter(out, "movies_requests_coalesced_total", IN_FLIGHT.coalesced());
+		var patterns = QUERIES.stats();
+		counter(out, "movies_pattern_cache_hits_total", patterns.hitCount());
+		counter(out, "movies_pattern_cache_misses_total", patterns.missCount());
+		counter(out, "movies_pattern_cache_evictions_total", patterns.evictionCount());
+		res.type("text/plain; version=0.0.4");
+		return out.toString();
+	}
+
+	private static void counter(StringBuilder out, String name, long value) {
+		out.append("# TYPE ").append(name).append(" counter\n").append(name).append(' ').append(value).append('\n');
+	}
+
+	/**
+	 * Replies with the compact JSON of {@code compute}, served from RESULTS while {@code generation} is still the live data.
+	 * On a miss, identical requests that arrive while it is being computed wait for it instead of computing it again.
+	 * A {@link Page} is replied as its items, with its cursor in a header. Pretty printing is rare enough that it skips the cache.
+	 */
+	private static Object replyCachedJSON(Request req, Response res, String key, Dataset generation, Supplier<?> compute) throws IOException {
+		if (Boolean.parseBoolean(req.queryParams("pretty"))) {
+			var data = compute.get();
+			return data instanceof Page<?> page ? replyPage(req, res, page) : replyJSON(req, res, data);
+		}
+		var reply = RESULTS.get(key, generation, () -> IN_FLIGHT.execute(key + "@" + generation.version(), () -> {
+			var data = compute.get();
+			var started = System.nanoTime();
+			var json = toJSON(data instanceof Page<?> page ? page.items() : data);
+			serialized(req, json.length, System.nanoTime() - started, true);
+			return new ResultCache.Reply(json, data instanceof Page<?> page && page.nextCursor() != null ? Map.of(NEXT_CURSOR, page.nextCursor()) : Map.of());
+		}));
+		serialized(req, reply.body().length, 0, false);
+		res.type("application/json");
+		res.header("Vary", "Accept-Encoding");
+		etag(req, res);
+		reply.headers().forEach(res::header);
+		var body = reply.body();
+		if (body.length >= COMPRESSION_MIN_BYTES && CompressingOutputStream.acceptsGzip(req.headers("Accept-Encoding"))) {
+			res.header("Content-Encoding", "gzip");
+			body = reply.gzipped();
+		}
+		res.raw().setContentLength(body.length);
+		var out = res.raw().getOutputStream();
+		out.write(body);
+		// commits the response, so Spark does not try to add a body of its own
+		out.flush();
+		return "";
+	}
+
+	private static byte[] toJSON(Object data) {
+		var bytes = new ByteArrayOutputStream();
+		try (var out = new ResponseWriter(bytes)) {
+			FRAGMENTS.write(out, data);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static Object replyJSON(Request req, Response res, Stream<?> data) throws IOException { return replyJSON(req, res, data.toList()); }
+	private static Object replyJSON(Request req, Response res, Object data) throws IOException {
 		res.type("application/json");
-		return GSON.toJson(data);
+		res.header("Vary", "Accept-Encoding");
+		etag(req, res);
+		var started = System.nanoTime();
+		// Stream straight into the response instead of building the whole document as a String first
+		var body = new CompressingOutputStream(res.raw(), req.headers("Accept-Encoding"), COMPRESSION_MIN_BYTES);
+		try (body; var out = new ResponseWriter(body)) {
+			if (Boolean.parseBoolean(req.queryParams("pretty"))) {
+				var json = new JsonWriter(out);
+				json.setIndent("  ");
+				GSON.toJson(data, data.getClass(), json);
+				json.flush();
+			} else {
+				// Movies and their credits never change after load, so their JSON is cached and copied instead
+				FRAGMENTS.write(out, data);
+			}
+		}
+		serialized(req, body.written(), System.nanoTime() - started, true);
+		return "";
+	}
+
+	// CREDIT_STORAGE=heap keeps credit names as Strings, CREDIT_STORAGE=off-heap as UTF-8 in a direct buffer
+	private static CreditDictionary.Storage creditStorage() {
+		var storage = System.getenv().getOrDefault("CREDIT_STORAGE", "heap");
+		return switch (storage) {
+			case "heap" -> CreditDictionary.Storage.HEAP;
+			case "off-heap" -> CreditDictionary.Storage.OFF_HEAP;
+			default -> throw new IllegalArgumentException("CREDIT_STORAGE must be heap or off-heap, not " + storage);
+		};
+	}
+
+	private static DatasetSnapshot snapshot() {
+		var path = System.getenv().getOrDefault("DATASET_SNAPSHOT", "dataset.snapshot");
+		if (path.isBlank()) {
+			return null;
+		}
+		var maxAge = Duration.ofMinutes(Long.parseLong(System.getenv().getOrDefault("DATASET_SNAPSHOT_MAX_AGE_MINUTES", "1440")));
+		return new DatasetSnapshot(Path.of(path), maxAge, Server::moviesFingerprint, Server::creditsFingerprint, CREDIT_STORAGE);
+	}
+
+	private static long moviesFingerprint() {
+		try (var is = ClassLoader.getSystemResourceAsStream("movies-v2.json.gz")) {
+			var crc = new CRC32();
+			var buffer = new byte[64 * 1024];
+			for (int read; (read = is.read(buffer)) > 0; ) {
+				crc.update(buffer, 0, read);
+			}
+			return crc.getValue();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to read movie data", e);
+		}
+	}
+
+	// Inserts and deletes change the count or the newest _id; mongo 5 without a replica set has no change streams
+	private static long creditsFingerprint() {
+		try (
+			var mongoClient = MongoClients.create(MONGO_URI)
+		) {
+			var creditsCollection = mongoClient.getDatabase("moviesDB").getCollection("credits");
+			var newest = creditsCollection.find().projection(Projections.include("_id")).sort(Sorts.descending("_id")).limit(1).first();
+			return creditsCollection.estimatedDocumentCount() * 31 + (newest != null ? newest.get("_id").hashCode() : 0);
+		}
 	}
 
 	private static List<Movie> loadMovies() {
@@ -188,7 +684,12 @@ public class Server {
 			var mongoClient = MongoClients.create(MONGO_URI)
 		) {
 			var creditsCollection = mongoClient.getDatabase("moviesDB").getCollection("credits");
-			return StreamSupport.stream(creditsCollection.find().batchSize(5_000).map(Credit::new).spliterator(), false).toList();
+			var dictionary = new CreditDictionary();
+			var credits = StreamSupport.stream(creditsCollection.find().batchSize(5_000).map(data -> new Credit(data, dictionary)).spliterator(), false).toList();
+			dictionary.seal(CREDIT_STORAGE);
+			LOG.info("Loaded " + credits.size() + " credits sharing " + dictionary.size() + " distinct names and roles"
+				+ (CREDIT_STORAGE == CreditDictionary.Storage.OFF_HEAP ? ", " + dictionary.offHeapBytes() + " bytes of them off-heap" : ""));
+			return credits;
 		}
 	}
 
@@ -206,30 +707,127 @@ public class Server {
 
 	public static class Credit {
 		String id;
-		List<String> crew;
-		List<String> cast;
-		transient List<String> crewRole;
+		// [crew size, cast size (-1 when absent), crew person ids..., crew role ids..., cast person ids...]
+		private final int[] people;
+		private final CreditDictionary dictionary;
+		transient int[] roleCounts;
 
 		private static final Pattern ROLE = Pattern.compile("\\((.*)\\)");
+		private static final int NO_ROLE = -1;
 
-		public Credit(Document data) {
+		public Credit(Document data, CreditDictionary dictionary) {
 			this.id = data.getString("id");
-			this.crew = data.getList("crew", String.class);
-			this.cast = data.getList("cast", String.class);
-			this.crewRole = data.getList("crew", String.class).stream().map(Credit::getRole).toList();
+			this.dictionary = dictionary;
+			var crew = data.getList("crew", String.class);
+			var cast = data.getList("cast", String.class);
+			var castSize = cast != null ? cast.size() : 0;
+			this.people = new int[2 + crew.size() * 2 + castSize];
+			people[0] = crew.size();
+			people[1] = cast != null ? castSize : -1;
+			this.roleCounts = new int[CrewRole.VALUES.length];
+			for (int i = 0; i < crew.size(); i++) {
+				var nameAndRole = crew.get(i);
+				var matcher = ROLE.matcher(nameAndRole);
+				// an entry without a "(Role)" is counted as Other rather than failing the whole load
+				var hasRole = matcher.find();
+				roleCounts[(hasRole ? CrewRole.parseRole(matcher.group(1)) : CrewRole.Other).ordinal()]++;
+				// "Name (Role)" is split into two shared ids; anything else is kept whole so decoding stays exact
+				if (hasRole && matcher.end() == nameAndRole.length() && matcher.start() > 0 && nameAndRole.charAt(matcher.start() - 1) == ' ') {
+					people[2 + i] = dictionary.id(nameAndRole.substring(0, matcher.start() - 1));
+					people[2 + crew.size() + i] = dictionary.id(matcher.group(1));
+				} else {
+					people[2 + i] = dictionary.id(nameAndRole);
+					people[2 + crew.size() + i] = NO_ROLE;
+				}
+			}
+			for (int i = 0; i < castSize; i++) {
+				people[2 + crew.size() * 2 + i] = dictionary.id(cast.get(i));
+			}
 		}
 
-		private static String getRole(String nameAndRole) {
-			var matcher = ROLE.matcher(nameAndRole);
-			matcher.find();
-			return matcher.group(1);
+		/** Rebuilds a credit from its encoded parts, as written by {@link #people()} and {@link #roleCounts}. */
+		Credit(String id, int[] people, int[] roleCounts, CreditDictionary dictionary) {
+			this.id = id;
+			this.people = people;
+			this.roleCounts = roleCounts;
+			this.dictionary = dictionary;
+		}
+
+		int[] people() { return people; }
+		CreditDictionary dictionary() { return dictionary; }
+		int crewSize() { return people[0]; }
+		int castSize() { return Math.max(people[1], 0); }
+
+		String crewMember(int i) {
+			var name = dictionary.string(people[2 + i]);
+			var role = people[2 + crewSize() + i];
+			return role == NO_ROLE ? name : name + " (" + dictionary.string(role) + ")";
+		}
+
+		String castMember(int i) {
+			return dictionary.string(people[2 + crewSize() * 2 + i]);
+		}
+
+		void addRoleCounts(long[] totals) {
+			for (int role = 0; role < roleCounts.length; role++) {
+				totals[role] += roleCounts[role];
+			}
+		}
+
+		/**
+		 * Writes the same JSON the reflective adapter produced for the old List<String> fields, decoding ids as it goes.
+		 * Write-only: credits need a dictionary, which only a load from mongo or a snapshot provides.
+		 */
+		static class JsonAdapter extends TypeAdapter<Credit> {
+			@Override
+			public void write(JsonWriter out, Credit credit) throws IOException {
+				if (credit == null) {
+					out.nullValue();
+					return;
+				}
+				out.beginObject();
+				if (credit.id != null) {
+					out.name("id").value(credit.id);
+				}
+				out.name("crew").beginArray();
+				for (int i = 0; i < credit.crewSize(); i++) {
+					out.value(credit.crewMember(i));
+				}
+				out.endArray();
+				if (credit.people[1] >= 0) {
+					out.name("cast").beginArray();
+					for (int i = 0; i < credit.castSize(); i++) {
+						out.value(credit.castMember(i));
+					}
+					out.endArray();
+				}
+				out.endObject();
+			}
+
+			@Override
+			public Credit read(JsonReader in) {
+				throw new JsonParseException("Credits cannot be read from JSON, only loaded from mongo or a dataset snapshot, at " + in.getPath());
+			}
 		}
 	}
 	public record MovieWithCredits(Movie movie, List<Credit> credits) { }
 
+	/** One page of a ranked result; {@code nextCursor} is null on the last page. */
+	record Page<T>(List<T> items, String nextCursor) {
+		/** {@code items} are the ones at {@code ordinals}, which {@code ranking} puts in order. */
+		static <T> Page<T> of(List<T> items, int[] ordinals, Ranking ranking, int limit) {
+			var lastRank = ordinals.length == 0 ? -1 : ranking.rankOf(ordinals[ordinals.length - 1]);
+			var more = ordinals.length == limit && lastRank < ranking.size() - 1;
+			var next = more ? Base64.getUrlEncoder().withoutPadding().encodeToString((CURSOR_PREFIX + lastRank).getBytes(StandardCharsets.US_ASCII)) : null;
+			return new Page<>(items, next);
+		}
+	}
+
 	public enum CrewRole {
 		Director, Writer, Screenplay, Editor, Animation, Other;
 
+		static final CrewRole[] VALUES = values();
+
 		public static final Map<String, CrewRole> ROLES_MAP =
 			Arrays.stream(CrewRole.class.getEnumConstants()).collect(Collectors.toMap(CrewRole::toString, Function.identity()));
 
@@ -237,7 +835,15 @@ public class Server {
 			return ROLES_MAP.getOrDefault(inputRole, CrewRole.Other);
 		}
 	}
-	public record StatsResult(int matchedMovies, Map<CrewRole, Long> crewCount) { }
-
-	private static <T> Supplier<T> cache(Supplier<T> method) { return Suppliers.memoize(method); }
+	public record StatsResult(int matchedMovies, Map<CrewRole, Long> crewCount) {
+		static StatsResult of(int matchedMovies, long[] crewCount) {
+			var counts = new EnumMap<CrewRole, Long>(CrewRole.class);
+			for (var role : CrewRole.VALUES) {
+				if (crewCount[role.ordinal()] > 0) {
+					counts.put(role, crewCount[role.ordinal()]);
+				}
+			}
+			return new StatsResult(matchedMovies, counts);
+		}
+	}
 }
@@ -0,0 +1,49 @@
+package movies;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one computation per key at a time: callers that arrive while one is in flight wait for it
+ * and share its result instead of computing the same thing again. Nothing is kept once the computation is done,
+ * that is what the caches are for.
+ */
+final class SingleFlight<K, V> {
+	private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder executed = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+
+	V execute(K key, Supplier<V> compute) {
+		var mine = new CompletableFuture<V>();
+		var running = inFlight.putIfAbsent(key, mine);
+		if (running != null) {
+			coalesced.increment();
+			try {
+				return running.join();
+			} catch (CompletionException e) {
+				// the caller that ran it got the original exception, the others get it too rather than a wrapper
+				if (e.getCause() instanceof RuntimeException cause) {
+					throw cause;
+				}
+				throw e;
+			}
+		}
+		executed.increment();
+		try {
+			var result = compute.get();
+			mine.complete(result);
+			return result;
+		} catch (RuntimeException | Error e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, mine);
+		}
+	}
+
+	long executed() { return executed.sum(); }
+	long coalesced() { return coalesced.sum(); }
+}
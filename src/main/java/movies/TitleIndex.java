@@ -0,0 +1,206 @@
+package movies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Case-folded trigram index over movie titles, built once per movie list.
+ * Literal queries only touch the titles that share every trigram with the query;
+ * anything that looks like a regex must still be answered by scanning.
+ */
+final class TitleIndex {
+	private static final String REGEX_META = "\\^$.|?*+()[]{}";
+	private static final int GRAM = 3;
+
+	private final String[] titles;
+	private final String[] foldedTitles;
+	// CSR layout: postings for trigrams[i] are postings[offsets[i]..offsets[i + 1])
+	private final long[] trigrams;
+	private final int[] offsets;
+	private final int[] postings;
+	private final Ranking byTitle;
+
+	private TitleIndex(String[] titles, String[] foldedTitles, long[] trigrams, int[] offsets, int[] postings) {
+		this.titles = titles;
+		this.foldedTitles = foldedTitles;
+		this.trigrams = trigrams;
+		this.offsets = offsets;
+		this.postings = postings;
+		// case-insensitive alphabetical, ties in list order, movies without a title last
+		this.byTitle = new Ranking(IntStream.range(0, foldedTitles.length).boxed()
+			.sorted(Comparator.comparing((Integer ordinal) -> foldedTitles[ordinal], Comparator.nullsLast(Comparator.naturalOrder())))
+			.mapToInt(Integer::intValue)
+			.toArray());
+	}
+
+	static <T> TitleIndex build(List<T> items, Function<T, String> title) {
+		var titles = new String[items.size()];
+		var folded = new String[items.size()];
+		var grams = new HashMap<Long, IntList>();
+		for (int ordinal = 0; ordinal < folded.length; ordinal++) {
+			var t = title.apply(items.get(ordinal));
+			if (t == null) {
+				continue;
+			}
+			titles[ordinal] = t;
+			folded[ordinal] = fold(t);
+			for (int i = 0; i + GRAM <= t.length(); i++) {
+				var ids = grams.computeIfAbsent(trigram(folded[ordinal], i), k -> new IntList());
+				// ordinals arrive in ascending order, so a repeated trigram in one title is always the last entry
+				if (ids.size == 0 || ids.values[ids.size - 1] != ordinal) {
+					ids.add(ordinal);
+				}
+			}
+		}
+
+		var keys = grams.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+		var offsets = new int[keys.length + 1];
+		var postings = new int[grams.values().stream().mapToInt(ids -> ids.size).sum()];
+		for (int i = 0; i < keys.length; i++) {
+			var ids = grams.get(keys[i]);
+			System.arraycopy(ids.values, 0, postings, offsets[i], ids.size);
+			offsets[i + 1] = offsets[i] + ids.size;
+		}
+		return new TitleIndex(titles, folded, keys, offsets, postings);
+	}
+
+	static boolean isLiteral(String query) {
+		for (int i = 0; i < query.length(); i++) {
+			if (REGEX_META.indexOf(query.charAt(i)) >= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Returns the elements of {@code aligned} whose title contains the literal {@code query}, ignoring case. */
+	<T> List<T> select(String query, List<T> aligned) {
+		return select(search(query), aligned);
+	}
+
+	/** The elements of {@code aligned} at the given ordinals, in that order. */
+	static <T> List<T> select(int[] ordinals, List<T> aligned) {
+		var result = new ArrayList<T>(ordinals.length);
+		for (var ordinal : ordinals) {
+			result.add(aligned.get(ordinal));
+		}
+		return result;
+	}
+
+	/** Ascending ordinals of the titles that contain the literal {@code query}, ignoring case. */
+	int[] search(String query) {
+		return search(query, ScanEngine.SEQUENTIAL);
+	}
+
+	/** Like {@link #search(String)}, with {@code scans} running the full scan that needles too short for the index need. */
+	int[] search(String query, ScanEngine scans) {
+		var needle = fold(query);
+		var candidates = candidates(needle);
+		if (candidates == null) {
+			return scans.filter(foldedTitles.length, ScanEngine.SUBSTRING_COST,
+				() -> ordinal -> foldedTitles[ordinal] != null && foldedTitles[ordinal].contains(needle));
+		}
+		var matches = new int[candidates.length];
+		var count = 0;
+		for (var ordinal : candidates) {
+			if (foldedTitles[ordinal].contains(needle)) {
+				matches[count++] = ordinal;
+			}
+		}
+		return count == matches.length ? matches : Arrays.copyOf(matches, count);
+	}
+
+	/**
+	 * Ascending ordinals of the titles in which {@code pattern} finds a match; needs a full scan.
+	 * Throws {@link BudgetedCharSequence.BudgetExceededException} once its chunks have run for {@code budgetNanos} on every
+	 * thread the scan may use, that is for about {@code budgetNanos} of wall time when the scan has those threads to itself.
+	 */
+	int[] scan(Pattern pattern, ScanEngine scans, long budgetNanos) {
+		var remainingNanos = new AtomicLong(budgetNanos * scans.threads(titles.length, ScanEngine.REGEX_COST));
+		return scans.filter(titles.length, ScanEngine.REGEX_COST, () -> {
+			// Matchers are not thread-safe, every chunk gets its own, made when the chunk starts running
+			var text = new BudgetedCharSequence(remainingNanos);
+			var matcher = pattern.matcher(text);
+			return ordinal -> titles[ordinal] != null && matcher.reset(text.reset(titles[ordinal])).find();
+		});
+	}
+
+	/** Alphabetical ordering of the titles, for paging through them. */
+	Ranking byTitle() {
+		return byTitle;
+	}
+
+	/** Intersection of the posting lists of every trigram in the needle, or null when the needle is too short to use the index. */
+	private int[] candidates(String needle) {
+		if (needle.length() < GRAM) {
+			return null;
+		}
+		var lists = new ArrayList<int[]>();
+		for (int i = 0; i + GRAM <= needle.length(); i++) {
+			var slot = Arrays.binarySearch(trigrams, trigram(needle, i));
+			if (slot < 0) {
+				return new int[0];
+			}
+			lists.add(new int[] { offsets[slot], offsets[slot + 1] });
+		}
+		// intersect starting from the most selective trigram so the working set only shrinks
+		lists.sort((a, b) -> Integer.compare(a[1] - a[0], b[1] - b[0]));
+		var result = Arrays.copyOfRange(postings, lists.get(0)[0], lists.get(0)[1]);
+		var size = result.length;
+		for (int l = 1; l < lists.size() && size > 0; l++) {
+			size = intersect(result, size, lists.get(l)[0], lists.get(l)[1]);
+		}
+		return size == result.length ? result : Arrays.copyOf(result, size);
+	}
+
+	private int intersect(int[] into, int size, int from, int to) {
+		int kept = 0, i = 0, j = from;
+		while (i < size && j < to) {
+			if (into[i] < postings[j]) {
+				i++;
+			} else if (into[i] > postings[j]) {
+				j++;
+			} else {
+				into[kept++] = into[i++];
+				j++;
+			}
+		}
+		return kept;
+	}
+
+	static String fold(String s) {
+		var chars = new char[s.length()];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = fold(s.charAt(i));
+		}
+		return new String(chars);
+	}
+
+	// Same per-char folding as String.regionMatches(ignoreCase), which keeps folded strings the same length
+	static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private static long trigram(String folded, int at) {
+		return ((long) folded.charAt(at) << 32) | ((long) folded.charAt(at + 1) << 16) | folded.charAt(at + 2);
+	}
+
+	private static final class IntList {
+		int[] values = new int[4];
+		int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+	}
+}
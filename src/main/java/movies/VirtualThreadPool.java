@@ -0,0 +1,52 @@
+package movies;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * Jetty thread pool that runs every task, and so every request, on its own virtual thread.
+ * A request blocked on a slow query then parks its virtual thread instead of holding one of a fixed number of workers.
+ * Jetty's acceptor and selector loops run here as well; they block in the JDK's socket and selector calls,
+ * which are virtual-thread aware.
+ */
+final class VirtualThreadPool implements ThreadPool {
+	private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("jetty-virtual-", 0).factory());
+	private final AtomicInteger running = new AtomicInteger();
+
+	@Override
+	public void execute(Runnable task) {
+		running.incrementAndGet();
+		executor.execute(() -> {
+			try {
+				task.run();
+			} finally {
+				running.decrementAndGet();
+			}
+		});
+	}
+
+	@Override
+	public void join() throws InterruptedException {
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public int getThreads() {
+		return running.get();
+	}
+
+	@Override
+	public int getIdleThreads() {
+		return 0;
+	}
+
+	// There is always another virtual thread
+	@Override
+	public boolean isLowOnThreads() {
+		return false;
+	}
+}
@@ -0,0 +1,41 @@
+package movies;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import movies.Server.Movie;
+
+class BudgetedCharSequenceTest {
+	@Test
+	void abandonsABacktrackingScan() {
+		var planner = new QueryPlanner(16, ScanEngine.SEQUENTIAL, Duration.ofMillis(1));
+		var index = TitleIndex.build(TestData.movies(), Movie::title);
+		assertThrows(BudgetedCharSequence.BudgetExceededException.class, () -> planner.select(index, "^(\\w+\\s?)*$x"));
+		assertEquals(1, planner.overBudget(), "over budget");
+	}
+
+	@Test
+	void chargesOnlyTheTimeSpentReading() throws InterruptedException {
+		var remainingNanos = new AtomicLong(Duration.ofMillis(50).toNanos());
+		// as if queued for a scan thread twice as long as the whole budget before the chunk started
+		Thread.sleep(100);
+		var text = new BudgetedCharSequence(remainingNanos).reset("x".repeat(100_000));
+		for (int i = 0; i < text.length(); i++) {
+			text.charAt(i);
+		}
+		assertTrue(remainingNanos.get() > 0, "budget left after reading");
+
+		var spent = new BudgetedCharSequence(new AtomicLong(0)).reset("x".repeat(100_000));
+		assertThrows(BudgetedCharSequence.BudgetExceededException.class, () -> {
+			for (int i = 0; i < spent.length(); i++) {
+				spent.charAt(i);
+			}
+		});
+	}
+}
@@ -0,0 +1,33 @@
+package movies;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class CompressingOutputStreamTest {
+	@Test
+	void parsesAcceptEncoding() {
+		var cases = Map.ofEntries(
+			Map.entry("gzip", true),
+			Map.entry("GZip", true),
+			Map.entry("deflate, gzip, br", true),
+			Map.entry("gzip;q=0.5", true),
+			Map.entry(" gzip ; q=1.0 ", true),
+			Map.entry("gzip;q=0", false),
+			Map.entry("gzip; q=0.000", false),
+			Map.entry("*", true),
+			Map.entry("deflate, *;q=0.1", true),
+			Map.entry("*;q=0", false),
+			// an explicit gzip entry overrides the wildcard either way
+			Map.entry("*, gzip;q=0", false),
+			Map.entry("*;q=0, gzip", true),
+			Map.entry("identity", false),
+			Map.entry("deflate, br", false),
+			Map.entry("x-gzip", false),
+			Map.entry("", false));
+		cases.forEach((header, expected) -> assertEquals(expected, CompressingOutputStream.acceptsGzip(header), header));
+		assertEquals(false, CompressingOutputStream.acceptsGzip(null), "no header");
+	}
+}
@@ -0,0 +1,72 @@
+package movies;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DatasetSnapshotTest {
+	@TempDir
+	Path dir;
+
+	@Test
+	void readsBackWhatItWrote() throws IOException {
+		var movies = TestData.movies();
+		var documents = TestData.creditDocuments(movies);
+		var gson = TestData.gson();
+
+		for (var storage : CreditDictionary.Storage.values()) {
+			var credits = TestData.credits(documents, storage);
+			var snapshot = new DatasetSnapshot(dir.resolve(storage + ".snapshot"), Duration.ofHours(1), () -> 1, () -> 2, storage);
+			snapshot.write(movies, credits, 2);
+
+			var contents = snapshot.read().orElseThrow();
+			assertEquals(movies, contents.movies(), storage.toString());
+			assertEquals(gson.toJson(credits), gson.toJson(contents.credits()), storage.toString());
+			assertEquals(2, contents.creditsFingerprint(), storage.toString());
+		}
+	}
+
+	@Test
+	void rejectsASnapshotOfOtherSources() throws IOException {
+		var movies = TestData.movies();
+		var credits = TestData.credits(TestData.creditDocuments(movies), CreditDictionary.Storage.HEAP);
+		var path = dir.resolve("dataset.snapshot");
+		new DatasetSnapshot(path, Duration.ofHours(1), () -> 1, () -> 2, CreditDictionary.Storage.HEAP).write(movies, credits, 2);
+
+		assertTrue(new DatasetSnapshot(path, Duration.ofHours(1), () -> 3, () -> 2, CreditDictionary.Storage.HEAP).read().isEmpty(), "movies changed");
+		assertTrue(new DatasetSnapshot(path, Duration.ofHours(1), () -> 1, () -> 3, CreditDictionary.Storage.HEAP).read().isEmpty(), "credits changed");
+		assertTrue(new DatasetSnapshot(path, Duration.ZERO, () -> 1, () -> 2, CreditDictionary.Storage.HEAP).read().isEmpty(), "too old");
+	}
+
+	@Test
+	void rejectsACorruptOrTruncatedSnapshot() throws IOException {
+		var movies = TestData.movies();
+		var credits = TestData.credits(TestData.creditDocuments(movies), CreditDictionary.Storage.HEAP);
+		var path = dir.resolve("dataset.snapshot");
+		var snapshot = new DatasetSnapshot(path, Duration.ofHours(1), () -> 1, () -> 2, CreditDictionary.Storage.HEAP);
+		snapshot.write(movies, credits, 2);
+		var bytes = Files.readAllBytes(path);
+
+		var corrupt = bytes.clone();
+		corrupt[corrupt.length / 2] ^= 1;
+		Files.write(path, corrupt);
+		assertTrue(snapshot.read().isEmpty(), "flipped bit");
+
+		Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+		assertTrue(snapshot.read().isEmpty(), "truncated");
+
+		Files.write(path, Arrays.copyOf(bytes, 10));
+		assertTrue(snapshot.read().isEmpty(), "cut inside the header");
+
+		Files.delete(path);
+		assertTrue(snapshot.read().isEmpty(), "missing");
+	}
+}
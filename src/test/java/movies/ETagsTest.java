@@ -0,0 +1,31 @@
+package movies;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class ETagsTest {
+	private static final String ETAG = "\"18c2f-5d41402abc4b2a76b9719d911017c592\"";
+	private static final String GZIP_ETAG = "\"18c2f-5d41402abc4b2a76b9719d911017c592-gz\"";
+
+	@Test
+	void matchesIfNoneMatch() {
+		var cases = Map.ofEntries(
+			Map.entry(ETAG, true),
+			Map.entry("W/" + ETAG, true),
+			Map.entry("\"other\", " + ETAG, true),
+			Map.entry("\"other\",W/" + ETAG + " ,\"more\"", true),
+			Map.entry("*", true),
+			Map.entry("\"other\"", false),
+			Map.entry(GZIP_ETAG, false),
+			// unquoted or cut short, so not the same tag
+			Map.entry(ETAG.substring(1, ETAG.length() - 1), false),
+			Map.entry(ETAG.substring(0, ETAG.length() - 1), false),
+			Map.entry("", false));
+		cases.forEach((header, expected) -> assertEquals(expected, ETags.matches(header, ETAG), header));
+		assertEquals(false, ETags.matches(null, ETAG), "no header");
+		assertEquals(true, ETags.matches(ETAG + ", " + GZIP_ETAG, GZIP_ETAG), "the gzip tag");
+	}
+}
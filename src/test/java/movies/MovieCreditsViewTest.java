@@ -0,0 +1,63 @@
+package movies;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+
+import movies.Server.Credit;
+import movies.Server.Movie;
+
+class MovieCreditsViewTest {
+	// What /credits serialized before credits were dictionary-encoded and joined while writing
+	private record LegacyCredit(String id, List<String> crew, List<String> cast) { }
+
+	private record LegacyMovieWithCredits(Movie movie, List<LegacyCredit> credits) { }
+
+	@Test
+	void streamsTheSameJsonAsGsonOnTheOldLayout() throws IOException {
+		var movies = TestData.movies();
+		var documents = TestData.creditDocuments(movies);
+		var ordinals = TitleIndex.build(movies, Movie::title).byTitle().page(-1, movies.size());
+		var expected = new Gson().toJson(legacy(movies, documents, ordinals));
+
+		for (var storage : CreditDictionary.Storage.values()) {
+			var join = CreditJoin.build(movies, Movie::id, TestData.credits(documents, storage));
+			var view = new MovieCreditsView(movies, join, ordinals);
+			// with and without credit fragments, as for heap and off-heap credits in Server
+			for (var cacheable : List.<Set<Class<?>>>of(Set.of(Movie.class, Credit.class), Set.of(Movie.class))) {
+				assertEquals(expected, write(view, new FragmentCache(TestData.gson(), 64 << 20, cacheable)), storage + ", caching " + cacheable);
+			}
+		}
+	}
+
+	private static List<LegacyMovieWithCredits> legacy(List<Movie> movies, List<Document> documents, int[] ordinals) {
+		var result = new ArrayList<LegacyMovieWithCredits>();
+		for (var ordinal : ordinals) {
+			var movie = movies.get(ordinal);
+			var credits = documents.stream()
+				.filter(document -> document.getString("id").equals(movie.id()))
+				.map(document -> new LegacyCredit(document.getString("id"), document.getList("crew", String.class), document.getList("cast", String.class)))
+				.toList();
+			result.add(new LegacyMovieWithCredits(movie, credits.isEmpty() ? null : credits));
+		}
+		return result;
+	}
+
+	private static String write(Object data, FragmentCache fragments) throws IOException {
+		var bytes = new ByteArrayOutputStream();
+		try (var out = new ResponseWriter(bytes)) {
+			fragments.write(out, data);
+		}
+		return bytes.toString(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,40 @@
+package movies;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import movies.Server.Movie;
+
+class QueryPlannerTest {
+	private final QueryPlanner planner = new QueryPlanner(16, ScanEngine.SEQUENTIAL, Duration.ofMinutes(1));
+
+	@Test
+	void selectMatchesLikeAPatternScan() {
+		var movies = TestData.movies();
+		var index = TitleIndex.build(movies, Movie::title);
+
+		for (var query : List.of("the", "NIGHT", "^the", "dead$", "n.ght", "(love|war) ", "\\bman\\b", "^$", "am\u00C9lie", "\u03C9mega|\u0130stanbul", "[\u5343\uD83C\uDFAC]")) {
+			var literal = TitleIndex.isLiteral(query);
+			var pattern = Pattern.compile(literal ? Pattern.quote(query) : query, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+			var expected = IntStream.range(0, movies.size())
+				.filter(ordinal -> movies.get(ordinal).title() != null && pattern.matcher(movies.get(ordinal).title()).find())
+				.toArray();
+			assertArrayEquals(expected, planner.select(index, query), query);
+		}
+	}
+
+	@Test
+	void rejectsAnInvalidRegex() {
+		var index = TitleIndex.build(TestData.movies(), Movie::title);
+		assertThrows(PatternSyntaxException.class, () -> planner.select(index, "(unclosed"));
+		assertThrows(PatternSyntaxException.class, () -> planner.select(index, "*"));
+	}
+}
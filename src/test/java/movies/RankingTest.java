@@ -0,0 +1,83 @@
+package movies;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import movies.Server.Page;
+
+class RankingTest {
+	private static final int SIZE = 1_000;
+
+	@Test
+	void pagesLikeSortingThenSlicing() {
+		var random = new Random(11);
+		var order = shuffled(IntStream.range(0, SIZE).toArray(), random);
+		var ranking = new Ranking(order);
+
+		for (int round = 0; round < 200; round++) {
+			var subset = shuffled(IntStream.range(0, SIZE).filter(ordinal -> random.nextInt(4) == 0).toArray(), random);
+			var after = random.nextInt(SIZE + 2) - 1;
+			var limit = 1 + random.nextInt(round % 2 == 0 ? 20 : 2 * SIZE);
+
+			assertArrayEquals(reference(order, ranking, subset, after, limit), ranking.page(subset, after, limit),
+				"subset of " + subset.length + " after " + after + " limit " + limit);
+			assertArrayEquals(reference(order, ranking, IntStream.range(0, SIZE).toArray(), after, limit), ranking.page(after, limit),
+				"all after " + after + " limit " + limit);
+		}
+		assertArrayEquals(new int[0], ranking.page(new int[0], -1, 10));
+	}
+
+	@Test
+	void followingCursorsVisitsEverySelectedOrdinalOnce() {
+		var random = new Random(13);
+		var order = shuffled(IntStream.range(0, SIZE).toArray(), random);
+		var ranking = new Ranking(order);
+		var subset = IntStream.range(0, SIZE).filter(ordinal -> ordinal % 3 == 0).toArray();
+
+		for (var limit : new int[] { 1, 7, subset.length, subset.length + 1 }) {
+			var visited = new ArrayList<Integer>();
+			var after = -1;
+			for (int pages = 0; ; pages++) {
+				var ordinals = ranking.page(subset, after, limit);
+				var page = Page.of(Arrays.stream(ordinals).boxed().toList(), ordinals, ranking, limit);
+				visited.addAll(page.items());
+				if (page.nextCursor() == null) {
+					break;
+				}
+				var cursor = new String(Base64.getUrlDecoder().decode(page.nextCursor()), StandardCharsets.US_ASCII);
+				after = Integer.parseInt(cursor.substring("after:".length()));
+				assertTrue(pages < subset.length, "limit " + limit + " never ends");
+			}
+			assertArrayEquals(reference(order, ranking, subset, -1, subset.length), visited.stream().mapToInt(Integer::intValue).toArray(), "limit " + limit);
+		}
+	}
+
+	private static int[] reference(int[] order, Ranking ranking, int[] ordinals, int after, int limit) {
+		return Arrays.stream(ordinals)
+			.map(ranking::rankOf)
+			.filter(rank -> rank > after)
+			.sorted()
+			.limit(limit)
+			.map(rank -> order[rank])
+			.toArray();
+	}
+
+	private static int[] shuffled(int[] values, Random random) {
+		for (int i = values.length - 1; i > 0; i--) {
+			var j = random.nextInt(i + 1);
+			var tmp = values[i];
+			values[i] = values[j];
+			values[j] = tmp;
+		}
+		return values;
+	}
+}
@@ -0,0 +1,30 @@
+package movies;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import movies.Server.Movie;
+
+class ReleaseDateIndexTest {
+	@Test
+	void releasedBeforeSelectsWhatTheStringCompareSelected() {
+		var movies = TestData.movies();
+		var index = ReleaseDateIndex.build(movies, Movie::releaseDate);
+
+		for (var year : List.of("1950", "1995", "2010", "2010-06", "2010-06-15", "2100")) {
+			// what /old-movies filtered on before the index, now ordered newest first with unknown dates last
+			var expected = movies.stream()
+				.filter(movie -> movie.releaseDate().compareTo(year) < 0)
+				.sorted(Comparator.comparingInt((Movie movie) -> ReleaseDateIndex.epochDay(movie.releaseDate())).reversed())
+				.toList();
+
+			assertEquals(expected, index.releasedBefore(ReleaseDateIndex.cutoff(year), movies.size()), year);
+			assertEquals(expected.subList(0, Math.min(10, expected.size())), index.releasedBefore(ReleaseDateIndex.cutoff(year), 10), year + " n=10");
+			assertEquals(List.of(), index.releasedBefore(ReleaseDateIndex.cutoff(year), 0), year + " n=0");
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package movies;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ResponseWriterTest {
+	// ASCII, two- and three-byte chars, a surrogate pair and both halves of one on their own
+	private static final String[] PIECES = { "a", "Z", " ", "\u00E9", "\u00DF", "\u03A9", "\u5343", "\uFFFD", "\uD83C\uDFAC", "\uD83C", "\uDFAC" };
+
+	@Test
+	void encodesLikeTheJdk() throws IOException {
+		var random = new Random(3);
+		for (int round = 0; round < 50; round++) {
+			var text = new StringBuilder();
+			// up to three buffers' worth, so multi-byte chars and pairs also land on buffer boundaries
+			for (int i = random.nextInt(3 * 16 * 1024); i > 0; i--) {
+				text.append(PIECES[random.nextInt(PIECES.length)]);
+			}
+			var expected = text.toString().getBytes(StandardCharsets.UTF_8);
+
+			var bytes = new ByteArrayOutputStream();
+			try (var out = new ResponseWriter(bytes)) {
+				// in chunks of random size through every write method, so pairs are also split across calls
+				for (int at = 0; at < text.length(); ) {
+					var end = Math.min(text.length(), at + 1 + random.nextInt(100));
+					switch (random.nextInt(3)) {
+						case 0 -> out.write(text.toString(), at, end - at);
+						case 1 -> out.write(text.substring(at, end).toCharArray());
+						default -> {
+							for (int i = at; i < end; i++) {
+								out.write(text.charAt(i));
+							}
+						}
+					}
+					at = end;
+				}
+			}
+			assertArrayEquals(expected, bytes.toByteArray(), "round " + round);
+		}
+	}
+
+	@Test
+	void writesRawBytesInBetween() throws IOException {
+		var large = new byte[40 * 1024];
+		new Random(5).nextBytes(large);
+		var bytes = new ByteArrayOutputStream();
+		try (var out = new ResponseWriter(bytes)) {
+			out.write("\u00E9\uD83C");
+			out.writeRaw(large);
+			out.write("\uDFAC!");
+		}
+		// each piece of text on its own, half a pair at either end becomes '?'
+		var expected = new ByteArrayOutputStream();
+		expected.write("\u00E9\uD83C".getBytes(StandardCharsets.UTF_8));
+		expected.write(large);
+		expected.write("\uDFAC!".getBytes(StandardCharsets.UTF_8));
+		assertArrayEquals(expected.toByteArray(), bytes.toByteArray());
+	}
+}
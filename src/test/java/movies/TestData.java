@@ -0,0 +1,73 @@
+package movies;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.Document;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import movies.Server.Credit;
+import movies.Server.Movie;
+
+/**
+ * The first few thousand movies of {@link Fixtures}, some retitled with non-ASCII, emoji and missing titles,
+ * with credits that also have the shapes the generator never produces.
+ */
+final class TestData {
+	static final int MOVIE_COUNT = 3_000;
+
+	private static final String[] TITLES = {
+		"Am\u00E9lie", "LA CIT\u00C9 DES ENFANTS PERDUS", "Stra\u00DFe der Tr\u00E4ume", "\u5343\u3068\u5343\u5C0B\u306E\u795E\u96A0\u3057", "\uD83C\uDFAC Night of the \uD83E\uDDDF Dead",
+		"\u03A9mega \u03A9verdrive", "\u0130stanbul Hat\u0131ras\u0131", "A\u011F\u0131r Roman", null, "Tom & Jerry <The Movie> \"Redux\"",
+	};
+
+	private TestData() { }
+
+	static List<Movie> movies() {
+		var movies = new ArrayList<>(Fixtures.movies().subList(0, MOVIE_COUNT));
+		for (int i = 0; i < TITLES.length; i++) {
+			var ordinal = 10 + i * 7;
+			var movie = movies.get(ordinal);
+			var overview = TITLES[i] == null ? null : TITLES[i] + " \uD83C\uDF7F";
+			movies.set(ordinal, new Movie(movie.id(), TITLES[i], overview, movie.releaseDate(), movie.tagline(), TITLES[i], movie.voteAverage()));
+		}
+		return List.copyOf(movies);
+	}
+
+	/**
+	 * Movie 1 has no credit, movie 2 a credit without cast, movie 3 one without crew and movie 4 two credits.
+	 * Movie 0 has crew entries without a role, with text after the role, without a space before it and with characters Gson escapes.
+	 */
+	static List<Document> creditDocuments(List<Movie> movies) {
+		var documents = new ArrayList<Document>();
+		for (var document : Fixtures.creditDocuments(movies).toList()) {
+			switch (document.getString("id")) {
+				case "0" -> document.getList("crew", String.class).addAll(List.of(
+					"Uncredited Helper", "Jane Doe (Director) Jr.", "John Roe(Writer)", "Tom & Jerry <Studio> (Animation)"));
+				case "1" -> {
+					continue;
+				}
+				case "2" -> document.remove("cast");
+				case "3" -> document.put("crew", new ArrayList<String>());
+				case "4" -> documents.add(new Document("id", "4").append("crew", List.of("Second Unit (Director)")).append("cast", List.of("Extra")));
+				default -> { }
+			}
+			documents.add(document);
+		}
+		return documents;
+	}
+
+	static List<Credit> credits(List<Document> documents, CreditDictionary.Storage storage) {
+		var dictionary = new CreditDictionary();
+		var credits = documents.stream().map(document -> new Credit(document, dictionary)).toList();
+		dictionary.seal(storage);
+		return credits;
+	}
+
+	/** Configured like Server's, minus the pretty printing. */
+	static Gson gson() {
+		return new GsonBuilder().registerTypeAdapter(Credit.class, new Credit.JsonAdapter()).create();
+	}
+}
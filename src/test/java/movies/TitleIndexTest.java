@@ -0,0 +1,32 @@
+package movies;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import movies.Server.Movie;
+
+class TitleIndexTest {
+	private static final List<String> QUERIES = List.of(
+		"the", "THE", "Night", "jurassic park", "a", "an", "e n", "zzz", "", "  ",
+		"am\u00E9lie", "AM\u00C9LIE", "cit\u00E9", "STRASSE", "stra\u00DFe", "tr\u00E4ume", "\u5343\u5C0B", "\uD83C\uDFAC", "\uD83E\uDDDF dead",
+		"\u03C9mega", "\u03A9MEGA", "istanbul", "\u0130stanbul", "a\u011F\u0131r", "A\u011EIR", "tom & jerry", "\"redux\"");
+
+	@Test
+	void searchFindsWhatAPatternScanFinds() {
+		var movies = TestData.movies();
+		var index = TitleIndex.build(movies, Movie::title);
+
+		for (var query : QUERIES) {
+			var pattern = Pattern.compile(Pattern.quote(query), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+			var expected = IntStream.range(0, movies.size())
+				.filter(ordinal -> movies.get(ordinal).title() != null && pattern.matcher(movies.get(ordinal).title()).find())
+				.toArray();
+			assertArrayEquals(expected, index.search(query), query);
+		}
+	}
+}
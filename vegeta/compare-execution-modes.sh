@@ -0,0 +1,44 @@
+#!/usr/bin/env bash
+# Compares p99 latency of servers running in different execution modes under the same mixed /stats + /movies load.
+#
+# Start one server per mode, with result caching off so /stats does real work every time, e.g.
+#   MOVIES_API_PORT=8081 MOVIES_API_EXECUTION=platform MOVIES_API_THREADS=8 RESULT_CACHE_MB=0 ./gradlew runServer
+#   MOVIES_API_PORT=8091 MOVIES_API_EXECUTION=virtual RESULT_CACHE_MB=0 DATASET_SNAPSHOT=dataset-virtual.snapshot ./gradlew runServer
+# then
+#   vegeta/compare-execution-modes.sh platform=http://localhost:8081 virtual=http://localhost:8091
+set -e
+
+DURATION="${DURATION:-60s}"
+RATE="${RATE:-200}"
+WORKERS="${WORKERS:-64}"
+
+if [ "$#" -eq 0 ]; then
+  echo "usage: $0 label=http://host:port [label=http://host:port ...]" >&2
+  exit 1
+fi
+
+function targets() {
+  local base="$1"
+  # slow regex /stats calls that block a worker, interleaved with cheap /movies lookups
+  cat <<TARGETS
+GET ${base}/stats?q=the
+GET ${base}/stats?q=.*e.*e.*s
+GET ${base}/movies?q=jurassic
+GET ${base}/movies?q=star
+GET ${base}/movies?q=love
+TARGETS
+}
+
+printf "%-12s %10s %10s %10s %10s %8s\n" "mode" "p50" "p90" "p99" "max" "success"
+for arg in "$@"; do
+  label="${arg%%=*}"
+  base="${arg#*=}"
+  report=$(targets "$base" \
+    | vegeta attack -duration="$DURATION" -rate="$RATE" -workers="$WORKERS" -max-workers="$WORKERS" \
+    | tee "results-${label}.bin" \
+    | vegeta report -type=json)
+  echo "$report" > "results-${label}.json"
+  echo "$report" | jq -r --arg mode "$label" \
+    '[$mode, (.latencies["50th"]/1e6|tostring+"ms"), (.latencies["90th"]/1e6|tostring+"ms"), (.latencies["99th"]/1e6|tostring+"ms"), (.latencies.max/1e6|tostring+"ms"), (.success*100|tostring+"%")] | @tsv' \
+    | awk -F'\t' '{ printf "%-12s %10s %10s %10s %10s %8s\n", $1, $2, $3, $4, $5, $6 }'
+done